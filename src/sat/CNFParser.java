@@ -1,12 +1,7 @@
 package sat;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.nio.channels.ReadableByteChannel;
 
 import sat.formula.*;
 
@@ -14,20 +9,16 @@ import sat.formula.*;
 
 /**
  * This is the file to parse a given text file in the CNF (Conjunctive Normal Form) format into a Formula representing it.
+ * The file is read in a single pass by a SDimacsReader, which hands over each literal as it comes.
+ * A compressed file, such as a gzipped one, is decompressed as it is read, see SCompressedInput.
+ * To solve a big file, solverFromFile or SATSolver.solve(String, boolean, SATSolverOptions) read it straight into a 
+ * SATSolver instead, leaving out the Formula, which is then only needed to look at the clauses.
  * 
  * @author Kang Yue Sheng Benjamin
  *
  */
 public class CNFParser {
 
-	public static final String COMMENT_LINE_REGEX = "c.*";
-	public static final String PROBLEM_LINE_REGEX = "p cnf [0-9]+ [0-9]+";
-
-	public static final String CLAUSE_REGEX = "[-]?[^ ]+"; 
-	public static final String UNSIGNED_INTEGER_REGEX = "[0-9]+";
-	public static final String EMPTY_LINE_REGEX = "[ ]*";
-	public static final String CONSECUTIVE_SPACE_REGEX = "\\s{2,}";
-	
 	/**
 	 * A method to return a Formula based on the CNF file specified by fileName
 	 * 
@@ -38,90 +29,85 @@ public class CNFParser {
 	 */
 	public static Formula formulaFromFile(String fileName, boolean swapLiteralsAndClausePositions) {
 		try {
-			
-			List<String> lines = linesFromUTF8File(fileName);
-			String problemLine = null;
-			ArrayList<String> literalList = new ArrayList<String>();
-			
-			int numberOfClauses = 0;
-			int numberOfLiterals = 0;
-			 
-			for (String string:lines) {	
-				String s = string.trim().replaceAll(CONSECUTIVE_SPACE_REGEX, " ");
-				if (Pattern.matches(COMMENT_LINE_REGEX, s) || Pattern.matches(EMPTY_LINE_REGEX, s)) {
-					//Do nothing
-				} else if (Pattern.matches(PROBLEM_LINE_REGEX, s)) { //The current line matches a problem line
-					if (problemLine!=null) { 
-						throw new CNFParseException("More than one Problem Lines exists in the CNF file.");
-					}
-					problemLine = s;
-					String[] problemLineTokens = problemLine.split(" ");
-					if (problemLineTokens.length!=4) {
-						throw new CNFParseException("The Problem Line is not well formed.");
-					}
-					if (!problemLineTokens[1].toLowerCase().equals("cnf")) {
-						throw new CNFParseException("The Problem Line does not specify CNF as the format.");
-					}
-					
-					int j = swapLiteralsAndClausePositions? 3 : 2;
-					int k = swapLiteralsAndClausePositions? 2 : 3;
-					if (Pattern.matches(UNSIGNED_INTEGER_REGEX, problemLineTokens[j])) {
-						numberOfLiterals = Integer.parseInt(problemLineTokens[j]);
-					} else {
-						throw new CNFParseException("The number of Literals in the Problem Line is not a positive integer.");
-					}
-					
-					if (Pattern.matches(UNSIGNED_INTEGER_REGEX, problemLineTokens[k])) {
-						numberOfClauses = Integer.parseInt(problemLineTokens[k]);
-					} else {
-						throw new CNFParseException("The number of Clauses in the Problem Line is not a positive Integer.");
-					}
-				} else {
-					String[] literalsInLine = s.split("\\s");
-					for (String literal:literalsInLine) {
-						if (Pattern.matches(CLAUSE_REGEX, literal)) {
-							literalList.add(literal);
-						} else {
-							throw new CNFParseException("The CNF file contains an invalid sequence of characters.");
-						}
-					}
-				}
-			} //End of for each line
-			
-			Formula	formula 		= new Formula();
-			Clause 	currentClause 	= new Clause();
-			HashSet<String> literalsEncountered = new HashSet<String>();
-			
-			for (String literal:literalList) {
-				if (literal.equals("0")) {
-					formula = formula.addClause(currentClause);
-					currentClause = new Clause();
-				} else if (literal.charAt(0)=='-') {
-					String nonNegativePart = literal.substring(1);
-					literalsEncountered.add(nonNegativePart);
-					currentClause = currentClause.add(NegLiteral.make(nonNegativePart));
-				} else {
-					literalsEncountered.add(literal);
-					currentClause = currentClause.add(PosLiteral.make(literal));
-				}
-			}
-			if (currentClause.isEmpty()==false){ //In case the last line is not terminated by 0
-				formula = formula.addClause(currentClause);
+			ReadableByteChannel channel = SCompressedInput.open(fileName);
+			try {
+				return formulaFromReader(new SDimacsReader(channel, swapLiteralsAndClausePositions));
+			} finally {
+				channel.close();
 			}
-			
-			//Checking the file for correctness
-			if (formula.getSize()>numberOfClauses) {
-				throw new CNFParseException("The number of Clauses exceeded the amount stated in the problem statement: " + formula.getSize() + " vs " + numberOfClauses);
-			}
-			if (literalsEncountered.size()>numberOfLiterals) {
-				throw new CNFParseException("The number of Literals exceeded the amount stated in the problem statement: " + literalsEncountered.size() + " vs " + numberOfLiterals);
+		} catch (CNFParseException e) {
+			System.out.println(e);
+			return null;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * A method to return a SATSolver holding the clauses of the CNF file specified by fileName, without making a Formula of
+	 * it, for files too large to. With more than one thread, the file is memory-mapped and parsed on numberOfThreads 
+	 * threads, see SDimacsLoader, unless it names its variables other than by DIMACS numbers or is compressed. Otherwise 
+	 * it is read in a single pass straight into the SATSolver, see SATSolver.addClauses(SDimacsReader). If 
+	 * options.instanceCacheDirectory is set, the file is loaded from its compiled instance there instead, see SCompiledInstance.
+	 * options.proofFileName is not used, as for any SATSolver built by its constructor.
+	 * 
+	 * @param fileName
+	 * @param swapLiteralsAndClausePositions See formulaFromFile
+	 * @param options The settings of the SATSolver
+	 * @param numberOfThreads The number of threads to parse on, 1 to parse on this thread alone
+	 * @return A SATSolver to which the clauses of the CNF have been added, or null if the CNF file has errors
+	 */
+	public static SATSolver solverFromFile(String fileName, boolean swapLiteralsAndClausePositions, SATSolverOptions options, int numberOfThreads) {
+		try {
+			SATSolver solver = new SATSolver(options);
+			if (options.instanceCacheDirectory==null && numberOfThreads>1 && SCompressedInput.codecOf(fileName)==null && SDimacsLoader.load(fileName, swapLiteralsAndClausePositions, solver, numberOfThreads)) {
+				return solver;
 			}
-			return formula;
-			
+			solver = new SATSolver(options);
+			solver.addClausesFromFile(fileName, swapLiteralsAndClausePositions, options.instanceCacheDirectory);
+			return solver;
 		} catch (CNFParseException e) {
 			System.out.println(e);
 			return null;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns a Formula of the clauses read by a SDimacsReader, checked against its problem line
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 * @throws CNFParseException If there are more clauses or variables than the problem line states
+	 */
+	private static Formula formulaFromReader(SDimacsReader reader) throws IOException, CNFParseException {
+		Formula	formula 		= new Formula();
+		Clause 	currentClause 	= new Clause();
+		
+		int token;
+		while ((token = reader.next())!=SDimacsReader.END_OF_FILE) {
+			if (token==SDimacsReader.END_OF_CLAUSE) {
+				if (currentClause!=null) {
+					formula = formula.addClause(currentClause);
+				}
+				currentClause = new Clause();
+				continue;
+			}
+			if (currentClause!=null) { //null once the clause holds a literal and its negation, and is always TRUE
+				String name = reader.name();
+				currentClause = currentClause.add(reader.negative ? NegLiteral.make(name) : PosLiteral.make(name));
+			}
 		}
+		if (currentClause!=null && currentClause.isEmpty()==false){ //In case the last line is not terminated by 0
+			formula = formula.addClause(currentClause);
+		}
+		
+		//Checking the file for correctness
+		reader.checkCounts();
+		return formula;
 	}
 	
 	/**
@@ -136,28 +122,5 @@ public class CNFParser {
 		}
 	}
 	
-	/**
-	 * Returns a list of Strings representing each line in the text file specified by fileName
-	 * @param fileName
-	 * @return
-	 */
-	private static List<String> linesFromUTF8File(String fileName) {
-		try {
-		    FileReader file = new FileReader(fileName);
-		    BufferedReader reader = new BufferedReader(file);
-		    List<String> lines = new ArrayList<String>();
-		    String s;
-		    while ((s = reader.readLine()) != null) {
-		      lines.add(s);
-		    }
-		    reader.close();
-		    file.close();
-		    return lines;
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return null;
-	}
-	
 	
 }
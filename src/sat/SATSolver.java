@@ -1,15 +1,18 @@
 package sat;
 
+import immutable.EmptyImList;
 import immutable.ImList;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 import java.util.Iterator;
 
 
 import java.util.Map;
+import java.util.Random;
 
+import sat.CNFParser.CNFParseException;
 import sat.env.Bool;
 import sat.env.Environment;
 import sat.env.Variable;
@@ -24,21 +27,119 @@ import sat.formula.PosLiteral;
  * This is the class that takes in a CNF (Conjunctive Normal Form) represented in an instance of Formula, 
  * attempt to search for a possible solution and return one if there is.
  * 
+ * Besides the one-shot SATSolver.solve(Formula), a SATSolver can be created and used incrementally: clauses can be 
+ * added between calls to solve(Literal...), each call can assume some Literals to be TRUE, and the learned clauses, 
+ * activities and saved phases carry over from one call to the next. When a call finds no solution under its 
+ * assumptions, getFailedAssumptions gives the assumptions that were needed to show it.
+ * 
  * Some Terminology:
  * BCP 			- Boolean Constraint Propagation: Identifying Unit Clauses and setting them to evaluate to TRUE
- * subClauses	- An Array of some the original Clauses. 
+ * decision level	- The number of decisions on assignedLiterals. SLiterals assigned before any decision are at level 0.
+ * CDCL			- Conflict Driven Clause Learning: On a conflict, a learned clause is derived from the reasons of the 
+ * 				  assigned SLiterals and the search jumps back to the level where the learned clause becomes unit.
+ * 1UIP			- First Unique Implication Point: The SLiteral of the current decision level closest to the conflict 
+ * 				  that every path from the decision to the conflict goes through. 
+ * LBD			- Literal Block Distance: The number of different decision levels among the SLiterals of a clause.
+ * budget		- The time, conflicts and propagations a call to solve may take, after which it gives up with its 
+ * 				  status UNKNOWN, as it does when cancelled.
+ * restart		- Undoing every decision to start the search again, keeping the learned clauses and activities.
+ * watchers		- Each clause is watched by two of its SLiterals, and BCP only visits it when one of them becomes false.
+ * 				  Binary clauses are kept apart in binaryWatchers, as the other SLiteral of each one is all that BCP needs.
+ * clause reference	- Every clause is stored in clauseArena, and is referred to by the int index where it starts.
+ * SLiteral		- An int code standing for a Literal, see SLiteral. Its value is kept in values, indexed by code, and 
+ * 				  the decision level and reason of its variable in levels and reasons, indexed by variable index.
+ * assumption		- A SLiteral decided on before any other, at the decision level given by its position in assumptions. 
+ * 				  It is never flipped, so a conflict that would need it flipped means no solution under the assumptions.
  * 
  * Class Dependencies:
- * SClause, SLiteral, SLiteralPool
+ * SLiteral, SLiteralPool, SClauseArena, SIntList, SATSolverOptions, SRestartPolicy, SLearnedClauseDatabase, SPreprocessor, 
+ * SClauseSharingBuffer, SPortfolio, SCubeAndConquer, SLocalSearch, SProofWriter, SUnsatisfiableCore
  * 
  * @author Kang Yue Sheng Benjamin
  *
  */
 public class SATSolver {
 
+	public static final int PRIORITY_INCREMENT_CONSTANT = 10; //By how much to increment the priority of a SLiteral per clause it is in
+	public static final String SELECTOR_PREFIX = "$selector"; //The name of each selector variable is this followed by its number
+	public static final int BUDGET_CHECK_INTERVAL = 1024; //The number of steps of the search between checks of the clock and of interruption
+	
+	/**
+	 * The outcome of a call to solve
+	 */
+	public enum Status {
+		SATISFIABLE,	//A solution was found
+		UNSATISFIABLE,	//There is no solution under the assumptions
+		UNKNOWN			//The search was cancelled, interrupted or ran out of budget before finding out
+	}
+	
+	/**
+	 * An Exception thrown by the static methods that solve on a SATSolver of their own if it stops with status 
+	 * UNKNOWN, as null from them means that there is no solution
+	 */
+	public static class UnknownResultException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		public UnknownResultException(String message) {
+			super(message);
+		}
+	}
+	
 	public SLiteralPool sLiteralPool;  //An SLiteralPool to manage the creation and retrieval of SLiterals
-	public ArrayList<SClause> clauses; //An ArrayList of SClauses
-	public ArrayDeque<SLiteral> assignedLiterals; //A stack to keep track of which SLiterals have been assigned for backtracking
+	public SClauseArena clauseArena; //The storage of every clause, original and learned
+	public SIntList clauses; //The clause references of the clauses added, except those dropped for being TRUE on level 0
+	public SIntList[] watchers; //Pairs of clause reference and blocker code of the clauses watching each SLiteral, indexed by code
+	public byte[] values; //The value of each SLiteral, indexed by code
+	public int[] levels; //The decision level at which each variable was assigned
+	public SIntList[] binaryWatchers; //The other SLiteral of each binary clause containing each SLiteral, indexed by code
+	public int[] reasons; //The clause reference of the clause that implied each variable through BCP, NO_CLAUSE if it was decided
+	public SIntList assignedLiterals; //A stack to keep track of which SLiterals have been assigned for backtracking
+	public int propagationHead; //The index in assignedLiterals of the next SLiteral to be propagated by BCP
+	public int binaryPropagationHead; //The index in assignedLiterals of the next SLiteral to be propagated through binaryWatchers
+	public SIntList decisionLevelOffsets; //The index in assignedLiterals where each decision level starts
+	public SLearnedClauseDatabase learnedClauseDatabase; //The SClauses learned from conflicts
+	public boolean learnClauses; //TRUE to run CDCL, FALSE to run plain DPLL
+	public SRestartPolicy restartPolicy; //Decides when to restart if learnClauses, null to never restart
+	public int chronologicalBacktrackingThreshold; //Jumps back over more decision levels than this only undo the last one, 0 to always jump
+	public SPreprocessor preprocessor; //Simplifies the clauses before the search, null to search on them as they are
+	public SProofWriter proof; //Where the clauses learned and deleted are written as a DRAT proof, null for none
+	public long conflicts; //The number of conflicts so far
+	public long decisions; //The number of decisions so far
+	public long restarts; //The number of restarts so far
+	public long propagations; //The number of SLiterals propagated by BCP so far
+	public Status status; //The outcome of the last call to solve, null before the first
+	public long timeLimit; //The milliseconds each call to solve may search for, 0 for no limit
+	public long conflictLimit; //The number of conflicts each call to solve may have, 0 for no limit
+	public long propagationLimit; //The number of SLiterals each call to solve may propagate, 0 for no limit
+	public SIntList assumptions; //The codes of the assumptions of the current call to solve
+	private Literal[] assumptionLiterals; //The Literals the assumptions were given as
+	private SIntList failedAssumptions; //The codes of the assumptions needed to show that the last call to solve had no solution
+	private SIntList selectors; //The code of the positive SLiteral of each selector of addSelectedClause
+	private boolean started; //TRUE once solve has been called, after which the SLiteralPool has prioritized the SLiterals
+	private boolean emptyClauseFound; //TRUE once the clauses are known to have no solution, whatever the assumptions
+	private boolean applyPureLiteralRule; //TRUE to let the SLiteralPool assign pure literals, which only SATSolver.solve(Formula) may
+	private SIntList unitClauses; //The clause references of the unit clauses to assign on the next call to solve
+	private SIntList literalCodes; //Used by addClause to hold the codes of a clause
+	private int[] dimacsIndexes; //The variable index+1 of each DIMACS number added by addDimacsClauses, 0 if not yet known
+	public SClauseSharingBuffer clauseSharing; //Where learned clauses are exchanged with the other SATSolvers of an SPortfolio, null if alone
+	public int sharingId; //The number of this SATSolver in clauseSharing
+	private long sharingPosition; //The position in clauseSharing of the next clause to import
+	private volatile boolean cancelled; //Set by cancel from another thread to stop the search
+	private boolean outOfBudget; //TRUE once the current call to solve has used up its budget
+	private long deadline; //The System.nanoTime at which the current call to solve runs out of time, if timeLimit is set
+	private long conflictsEnd; //The number of conflicts at which the current call to solve runs out of budget
+	private long propagationsEnd; //The number of propagations at which the current call to solve runs out of budget
+	private int budgetCheckCountdown; //The number of steps of the search left until the next check of the clock
+	private SATSolverOptions.LocalSearch localSearch; //The local search to run before the first complete search, NONE once it has run
+	private long localSearchFlips; //The number of flips the local search may make
+	private long randomSeed; //The seed of the local search
+	private volatile SLocalSearch runningLocalSearch; //The local search running, for cancel to stop
+	private SIntList learnedLiterals; //The codes of the SLiterals of the last learned clause
+	private SIntList removedLiterals; //Used by analyzeConflict to clear the seen marks of SLiterals
+	private boolean[] seen; //A mark on each variable used by conflict analysis
+	private int conflictLiteral; //The SLiteral of a FALSE binary clause that is not kept by the conflict clause reference
+	private int[] binaryClause; //The SLiterals of a binary clause being looked at by conflict analysis
+	private int[] levelMarks; //Used to count the decision levels in a clause for its LBD
+	private int levelMarksStamp;
 	
 	
 	/**
@@ -48,186 +149,1583 @@ public class SATSolver {
 	 * 
 	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
 	 * @return An Environment containing a possible solution to Formula. 
+	 * @throws UnknownResultException If the thread is interrupted before the search finds out
 	 */
     public static Environment solve(Formula formula) {
-
-    	SATSolver solver = new SATSolver(formula.getSize());
+    	return solve(formula, new SATSolverOptions());
+    }
+    
+	/**
+	 * Same as solve(Formula), with the search configured by options.
+	 * As the SATSolver is thrown away afterwards, the pure literal rule and options.preprocess may simplify 
+	 * the clauses in ways that would not survive clauses added later.
+	 * 
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param options The settings of the SATSolver, such as whether to learn clauses.
+	 * @return An Environment containing a possible solution to Formula. 
+	 * @throws UnknownResultException If the search runs out of the budget of options, or the thread is interrupted, 
+	 * before finding out
+	 */
+    public static Environment solve(Formula formula, SATSolverOptions options) {
+    	try {
+    		SATSolver solver = createSingleUseSolver(options, formula.getSize());
+    		try {
+    			solver.addFormula(formula);
+    			return solver.solveToTheEnd();
+    		} finally {
+    			if (solver.proof!=null) {
+    				solver.proof.close();
+    			}
+    		}
+    	} catch (IOException e) {
+    		throw new RuntimeException(e);
+    	}
+    }
+    
+	/**
+	 * Same as solve(Formula, SATSolverOptions), on the clauses of a CNF file in DIMACS format. The clauses are read 
+	 * straight into the SATSolver as the file is read, see addClauses(SDimacsReader), without the Literals, Clauses 
+	 * and Formula that CNFParser.formulaFromFile makes, which take far longer to make than to solve big files.
+	 * The file may be compressed, see SCompressedInput, and is compiled to options.instanceCacheDirectory if set.
+	 * 
+	 * @param fileName
+	 * @param swapLiteralsAndClausePositions See CNFParser.formulaFromFile
+	 * @param options The settings of the SATSolver, such as whether to learn clauses.
+	 * @return An Environment containing a possible solution to the CNF, whose variables are named as in CNFParser.
+	 * @throws IOException
+	 * @throws CNFParseException If the CNF file has errors
+	 * @throws UnknownResultException See solve(Formula, SATSolverOptions)
+	 */
+    public static Environment solve(String fileName, boolean swapLiteralsAndClausePositions, SATSolverOptions options) throws IOException, CNFParseException {
+    	SATSolver solver = createSingleUseSolver(options, 0);
+    	try {
+    		solver.addClausesFromFile(fileName, swapLiteralsAndClausePositions, options.instanceCacheDirectory);
+    		return solver.solveToTheEnd();
+    	} finally {
+    		if (solver.proof!=null) {
+    			solver.proof.close();
+    		}
+    	}
+    }
+    
+	/**
+	 * Same as solve(Formula), with numberOfThreads differently configured SATSolvers searching at once and sharing 
+	 * their best learned clauses. The answer of whichever finishes first is returned. See SPortfolio.
+	 * 
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param numberOfThreads The number of SATSolvers to run in parallel, at least 1.
+	 * @return An Environment containing a possible solution to Formula. 
+	 * @throws UnknownResultException If the thread is interrupted before the search finds out
+	 */
+    public static Environment solve(Formula formula, int numberOfThreads) {
+    	return SPortfolio.solve(formula, numberOfThreads);
+    }
+    
+	/**
+	 * Same as solve(Formula), with the search split into cubes solved on numberOfThreads threads. 
+	 * Suits hard problems with no solution better than solve(Formula, int). See SCubeAndConquer.
+	 * 
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param numberOfThreads The number of threads, at least 1.
+	 * @return An Environment containing a possible solution to Formula. 
+	 */
+    public static Environment solveCubes(Formula formula, int numberOfThreads) {
+    	return SCubeAndConquer.solve(formula, numberOfThreads);
+    }
+    
+	/**
+	 * Finds a subset of the clauses of a Formula with no solution that has no solution on its own, by solving with 
+	 * a selector variable switching each clause on and off. See SUnsatisfiableCore.
+	 * 
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param minimise TRUE to go on until no clause of the core can be removed, which costs a call to solve per clause
+	 * @return A Formula of the clauses of formula in the core, or null if formula has a solution. 
+	 * @throws UnknownResultException If the thread is interrupted before the core is found
+	 */
+    public static Formula unsatisfiableCore(Formula formula, boolean minimise) {
+    	return SUnsatisfiableCore.extract(formula, SUnsatisfiableCore.createOptions(), minimise);
+    }
+    
+    /**
+     * Same as solve(), for the static methods, whose null may only mean that there is no solution
+     * @return
+     * @throws UnknownResultException If status is UNKNOWN
+     */
+    private Environment solveToTheEnd() {
+    	Environment environment = solve();
+    	if (status==Status.UNKNOWN) {
+    		throw new UnknownResultException("The search stopped after " + conflicts + " conflicts, before finding out whether there is a solution");
+    	}
+    	return environment;
+    }
+    
+    /**
+     * Creates a SATSolver to be thrown away after a single call to solve, which may apply the pure literal rule and
+     * preprocess, and which writes a proof if options ask for one
+     * @param options
+     * @param numberOfClauses The number of clauses expected, or 0 if not known
+     * @return
+     * @throws IOException If the proof file cannot be opened
+     */
+    private static SATSolver createSingleUseSolver(SATSolverOptions options, int numberOfClauses) throws IOException {
+    	SATSolver solver = new SATSolver(options, numberOfClauses);
+    	solver.applyPureLiteralRule = true;
+    	solver.preprocessor = (options.preprocess && options.proofFileName==null) ? new SPreprocessor() : null;
+    	if (options.proofFileName!=null) {
+    		solver.proof = new SProofWriter(options.proofFileName, solver.sLiteralPool);
+    	}
+    	return solver;
+    }
+    
+    /**
+     * Creates a SATSolver with no clauses, with the default SATSolverOptions
+     */
+    public SATSolver() {
+    	this(new SATSolverOptions());
+    }
+    
+    /**
+     * Creates a SATSolver with no clauses, for incremental use. options.preprocess and options.proofFileName are not used;
+     * to log a DRAT proof, set proof to a SProofWriter over a channel before adding clauses.
+     * @param options The settings of the SATSolver, such as whether to learn clauses.
+     */
+    public SATSolver(SATSolverOptions options) {
+    	this(options, 0);
+    }
+    
+    /**
+     * Adds every clause of a Formula
+     * @param formula
+     */
+    public void addFormula(Formula formula) {
+    	for (Clause c:formula.getClauses()) {
+    		addClause(c);
+    	}
+    }
+    
+    /**
+     * Adds a clause, which every later solution must satisfy. Literals of new variables may be used.
+     * @param clause
+     */
+    public void addClause(Clause clause) {
+    	toLiteralCodes(clause);
+    	addLiteralCodes();
+    }
+    
+    /**
+     * Adds clauses given as DIMACS numbers, as read by SDimacsReader.readClauses, without making Literals of them.
+     * Variable n is the variable named by the String of n, as in a Formula parsed by CNFParser, so both kinds of 
+     * clauses may be added to the same SATSolver.
+     * @param literals Each clause as the signed DIMACS numbers of its literals, followed by a 0
+     * @param length The number of ints of literals to take, which must end a clause
+     */
+    public void addDimacsClauses(int[] literals, int length) {
+    	literalCodes.clear();
+    	for (int i=0; i!=length; ++i) {
+    		int number = literals[i];
+    		if (number!=0) {
+    			literalCodes.add(getDimacsLiteralCode(number));
+    		} else {
+    			addReadLiteralCodes();
+    			literalCodes.clear();
+    		}
+    	}
+    }
+    
+    /**
+     * Adds every clause of a CNF file, which may be compressed, see SCompressedInput. The file is read with 
+     * addClauses(SDimacsReader), unless a cache directory is given, in which case its compiled instance is loaded,
+     * and made first if it is not there yet, see SCompiledInstance.loadCached.
+     * @param fileName
+     * @param swapLiteralsAndClausePositions See CNFParser.formulaFromFile
+     * @param instanceCacheDirectory See SATSolverOptions.instanceCacheDirectory, null to read the text
+     * @throws IOException
+     * @throws CNFParseException If the CNF file has errors
+     */
+    public void addClausesFromFile(String fileName, boolean swapLiteralsAndClausePositions, String instanceCacheDirectory) throws IOException, CNFParseException {
+    	if (instanceCacheDirectory!=null && SCompiledInstance.loadCached(fileName, swapLiteralsAndClausePositions, instanceCacheDirectory, this)) {
+    		return;
+    	}
+    	ReadableByteChannel channel = SCompressedInput.open(fileName);
+    	try {
+    		SDimacsReader reader = new SDimacsReader(channel, swapLiteralsAndClausePositions);
+    		addClauses(reader);
+    		reader.checkCounts();
+    	} finally {
+    		channel.close();
+    	}
+    }
+    
+    /**
+     * Adds every clause left to be read by a SDimacsReader, each as soon as it is read, without making Literals, 
+     * Clauses or a Formula of them. Variables are named as in a Formula parsed by CNFParser, and a variable that 
+     * is a DIMACS number is looked up as in addDimacsClauses, without a String.
+     * The problem line is left for the caller to check, with SDimacsReader.checkCounts.
+     * @param reader
+     * @throws IOException
+     * @throws CNFParseException See SDimacsReader.next
+     */
+    public void addClauses(SDimacsReader reader) throws IOException, CNFParseException {
+    	literalCodes.clear();
+    	int token;
+    	while ((token = reader.next())!=SDimacsReader.END_OF_FILE) {
+    		if (token==SDimacsReader.END_OF_CLAUSE) {
+    			addReadLiteralCodes();
+    			literalCodes.clear();
+    		} else if (reader.number!=0) {
+    			literalCodes.add(getDimacsLiteralCode(reader.negative ? -reader.number : reader.number));
+    		} else {
+    			literalCodes.add(SLiteral.code(sLiteralPool.getVariableIndex(reader.name()), reader.negative));
+    		}
+    	}
+    	if (!literalCodes.isEmpty()) { //In case the last line is not terminated by 0
+    		addReadLiteralCodes();
+    		literalCodes.clear();
+    	}
+    }
+    
+    /**
+     * Adds a clause that only has to be satisfied when its selector is assumed by solveSelected, so that the 
+     * clauses needed to show that there is no solution can be found from the failed assumptions. The selector is a 
+     * new variable, whose negative SLiteral is added to the clause. Calls to solve leave the selectors free, which 
+     * leaves the clause out.
+     * @param clause
+     * @return The number of the selector, counted from 0 in the order the clauses are added
+     */
+    public int addSelectedClause(Clause clause) {
+    	int selector = sLiteralPool.getPositiveLiteralWithString(SELECTOR_PREFIX + selectors.size());
+    	selectors.add(selector);
+    	toLiteralCodes(clause);
+    	literalCodes.add(SLiteral.inverse(selector));
+    	ensureVariables(sLiteralPool.numberOfVariables);
+    	addClause(literalCodes.data, literalCodes.size());
+    	return selectors.size()-1;
+    }
+    
+    /**
+     * Searches for a solution of the clauses added by addClause and of the selected clauses of some selectors. 
+     * Unlike solve, the solution is not built into an Environment, and the selectors are numbers rather than 
+     * Literals, so that it stays fast with a selector for each of many thousands of clauses.
+     * @param selected The numbers of the selectors to assume, as returned by addSelectedClause
+     * @param failed Cleared, then if there is no solution, filled with the numbers of the selectors that were 
+     * needed to show it, in the order of selected. Left empty if the clauses of addClause have no solution by themselves.
+     * @return TRUE if there is a solution, FALSE if there is none or the search gave up, which status tells apart
+     */
+    public boolean solveSelected(SIntList selected, SIntList failed) {
+    	this.assumptionLiterals = null;
+    	this.assumptions.clear();
+    	for (int i=0; i!=selected.size(); ++i) {
+    		this.assumptions.add(selectors.get(selected.get(i)));
+    	}
+    	failedAssumptions.clear();
+    	boolean solvable = search();
+    	undoAssignmentsToLevel(0);
     	
-    	//Converting the Formula to internal data structures optimized for more efficiency
-		ImList<Clause> clauseList = formula.getClauses();
-		for (Clause c:clauseList) {
-			Iterator<Literal> literalIterator = c.iterator();
-			
-			SClause newClause = new SClause();
-			while (literalIterator.hasNext()) {
-				Literal literal = literalIterator.next();
-				String variable = literal.getVariable().toString();
-				if (literal instanceof PosLiteral) {
-					SLiteral literalToAdd = solver.sLiteralPool.getPositiveLiteralWithString(variable);
-					newClause.addLiteral(literalToAdd);
-				} else {
-					SLiteral literalToAdd = solver.sLiteralPool.getNegativeLiteralWithString(variable);
-					newClause.addLiteral(literalToAdd);
-				}
-			}
-			int newClauseSize = newClause.literals.size();
-			for (int i=0; i!=newClauseSize; ++i) {
-				newClause.literals.get(i).priority -= newClauseSize;
-			}
-			solver.clauses.add(newClause);
-		}
-		
-		//Prioritize the literals
-		solver.sLiteralPool.preProcess();
-		
-		//Starts the solving process
-		boolean solvable = solver.attemptSolving(solver.clauses);
+    	failed.clear();
+    	for (int i=0; i!=failedAssumptions.size(); ++i) {
+    		seen[SLiteral.index(failedAssumptions.get(i))] = true;
+    	}
+    	for (int i=0; i!=selected.size(); ++i) {
+    		int index = SLiteral.index(selectors.get(selected.get(i)));
+    		if (seen[index]) {
+    			seen[index] = false;
+    			failed.add(selected.get(i));
+    		}
+    	}
+    	return solvable;
+    }
+    
+    /**
+     * Searches for a solution of the clauses added so far in which every assumption is TRUE.
+     * Everything learned stays for the next call, except the assumptions themselves.
+     * @param assumptions Literals that must be TRUE in the solution, possibly none
+     * @return An Environment containing a possible solution, or null if there is none under the assumptions. 
+     */
+    public Environment solve(Literal... assumptions) {
+    	this.assumptionLiterals = assumptions;
+    	this.assumptions.clear();
+    	for (Literal l:assumptions) {
+    		this.assumptions.add(getLiteralCode(l));
+    	}
+    	ensureVariables(sLiteralPool.numberOfVariables);
+    	failedAssumptions.clear();
+		boolean solvable = search();
         
 		//If a solution is found, it starts repackaging it in an Environment instance before returning it
-		if (solvable==false) {
-        	return null;
-        } else {
-        	Environment environment = new Environment(); 
-        	HashMap<String, SLiteral> literalsHashMap = solver.sLiteralPool.positiveLiteralsHashMap;
-        	for (Map.Entry<String, SLiteral> entry : literalsHashMap.entrySet()) {
-        		SLiteral l = entry.getValue();
-        		if (l.assigned) { 
-        			environment = environment.put(new Variable(entry.getKey()), l.value ? Bool.TRUE:Bool.FALSE); 
+		Environment environment = null;
+		if (solvable) {
+        	if (preprocessor!=null) {
+        		preprocessor.extendModel(values);
+        	}
+        	environment = new Environment(); 
+        	for (Map.Entry<String, Integer> entry : sLiteralPool.variableIndexes.entrySet()) {
+        		byte value = values[SLiteral.code(entry.getValue(), false)];
+        		if (value!=SLiteral.UNASSIGNED) { 
+        			environment = environment.put(new Variable(entry.getKey()), value==SLiteral.TRUE ? Bool.TRUE:Bool.FALSE); 
         		}
         	}
-        	return environment;
         }
+		undoAssignmentsToLevel(0);
+		return environment;
+    }
+    
+    /**
+     * Searches for a solution under the assumptions, leaving it assigned in values, with the local search first 
+     * if it has yet to run. Sets status.
+     * @return TRUE if a solution was found, FALSE if there is none under the assumptions or the search gave up
+     */
+    private boolean search() {
+    	status = Status.UNSATISFIABLE;
+    	if (!prepare()) {
+    		return false;
+    	}
+    	startBudget();
+		boolean solvable;
+		if (localSearch!=SATSolverOptions.LocalSearch.NONE && this.assumptions.isEmpty()) {
+			if (BCP()!=SClauseArena.NO_CLAUSE) {
+				foundEmptyClause();
+				return false;
+			}
+			solvable = runLocalSearch() || attemptSolving();
+		} else {
+			solvable = attemptSolving();
+		}
+		if (clauseSharing!=null && !cancelled && !clauseSharing.finish(sharingId)) {
+			cancelled = true; //Another SATSolver sharing clauseSharing has answered first
+		}
+		if (cancelled || (outOfBudget && !solvable)) {
+			status = Status.UNKNOWN;
+			return false;
+		}
+		status = solvable ? Status.SATISFIABLE : Status.UNSATISFIABLE;
+		return solvable;
+    }
+    
+    /**
+     * Starts counting the budget of a call to solve from the conflicts, propagations and time so far
+     */
+    private void startBudget() {
+    	outOfBudget = false;
+    	conflictsEnd = conflictLimit>0 ? conflicts+conflictLimit : Long.MAX_VALUE;
+    	propagationsEnd = propagationLimit>0 ? propagations+propagationLimit : Long.MAX_VALUE;
+    	deadline = System.nanoTime()+timeLimit*1000000;
+    	budgetCheckCountdown = BUDGET_CHECK_INTERVAL;
+    }
+    
+    /**
+     * Called on every step of the search to check whether it should go on. The counters are compared every time, 
+     * while the clock and the interrupted flag of the thread are only looked at every BUDGET_CHECK_INTERVAL steps, 
+     * as they cost far more.
+     * @return TRUE if the search must stop, as it was cancelled, interrupted or has used up its budget
+     */
+    private boolean mustStop() {
+    	if (cancelled || (clauseSharing!=null && clauseSharing.isFinished())) {
+    		return true;
+    	}
+    	if (conflicts>=conflictsEnd || propagations>=propagationsEnd) {
+    		outOfBudget = true;
+    	} else if (--budgetCheckCountdown==0) {
+    		budgetCheckCountdown = BUDGET_CHECK_INTERVAL;
+    		outOfBudget = (timeLimit>0 && System.nanoTime()-deadline>=0) || Thread.currentThread().isInterrupted();
+    	}
+    	return outOfBudget;
+    }
+    
+    /**
+     * Picks the variable to split a cube on, by lookahead: the cube is assumed, then each of the first 
+     * numberOfCandidates unassigned variables in the order of the SLiteralPool is assigned both ways in turn, 
+     * and the variable whose two assignments imply the most SLiterals together is picked. An assignment that 
+     * leads to a conflict counts as implying every unassigned SLiteral, as that side of the split is refuted at once.
+     * Nothing is learned, and the SATSolver is left on level 0 as solve leaves it.
+     * @param cube The Literals assumed TRUE, possibly none
+     * @param numberOfCandidates The number of variables to look ahead on
+     * @return The positive Literal of the variable picked, or null if there is none because the cube is refuted 
+     * by propagation or leaves every variable assigned.
+     */
+    public Literal selectCubeLiteral(Literal[] cube, int numberOfCandidates) {
+    	SIntList cubeCodes = new SIntList(cube.length);
+    	for (Literal l:cube) {
+    		cubeCodes.add(getLiteralCode(l));
+    	}
+    	ensureVariables(sLiteralPool.numberOfVariables);
+    	if (!prepare()) {
+    		return null;
+    	}
+    	if (BCP()!=SClauseArena.NO_CLAUSE) {
+    		foundEmptyClause();
+    		return null;
+    	}
+    	
+    	int selected = SLiteral.NO_LITERAL;
+    	if (assumeCube(cubeCodes)) {
+    		int unassigned = sLiteralPool.numberOfVariables-assignedLiterals.size();
+    		long bestScore = -1;
+    		int candidates = 0;
+    		for (int i=0; i!=sLiteralPool.literalSelectionListSize && candidates!=numberOfCandidates; ++i) {
+    			int l = sLiteralPool.literalSelectionList[i];
+    			if (values[l]!=SLiteral.UNASSIGNED) { continue; }
+    			++candidates;
+    			long score = (long)(lookahead(l, unassigned)+1)*(lookahead(SLiteral.inverse(l), unassigned)+1);
+    			if (score>bestScore) {
+    				bestScore = score;
+    				selected = l;
+    			}
+    		}
+    	}
+    	undoAssignmentsToLevel(0);
+    	if (selected==SLiteral.NO_LITERAL) {
+    		return null;
+    	}
+    	return PosLiteral.make(sLiteralPool.variableNames.get(SLiteral.index(selected)));
+    }
+    
+    /**
+     * Returns the assumptions of the last call to solve(Literal...) that were needed to show that it had no solution.
+     * Empty if the clauses have no solution at all, if the last call found one, or if it was to solveSelected.
+     * @return
+     */
+    public ImList<Literal> getFailedAssumptions() {
+    	if (assumptionLiterals==null) {
+    		return new EmptyImList<Literal>();
+    	}
+    	return toAssumptionLiterals(failedAssumptions);
+    }
+    
+    /**
+     * Makes the SATSolver publish its short learned clauses of low LBD to a SClauseSharingBuffer, and import 
+     * the ones published by the other SATSolvers whenever it is back on level 0. The next call to solve stops 
+     * as if cancelled once another SATSolver sharing buffer has answered, so a buffer serves a single call.
+     * Every SATSolver sharing the buffer must be given the same clauses in the same order, so that they number 
+     * their variables alike, and none may apply the pure literal rule or a SPreprocessor.
+     * @param buffer
+     * @param id The number of this SATSolver, different from that of the others sharing buffer
+     */
+    public void shareClauses(SClauseSharingBuffer buffer, int id) {
+    	this.clauseSharing = buffer;
+    	this.sharingId = id;
+    	this.sharingPosition = buffer.size();
+    }
+    
+    /**
+     * Stops the search of a call to solve running in another thread, which then returns null whether or not 
+     * there is a solution, with status UNKNOWN. Interrupting the thread running the search does the same for that 
+     * call only. Nothing but learned clauses is left behind, so the SATSolver can still be used 
+     * afterwards, once the cancellation is cleared by calling this with FALSE.
+     * @param cancel TRUE to stop the search, FALSE to let later calls to solve search again
+     */
+    public void cancel(boolean cancel) {
+    	this.cancelled = cancel;
+    	SLocalSearch localSearch = runningLocalSearch;
+    	if (localSearch!=null) {
+    		localSearch.cancel(cancel);
+    	}
+    }
+    
+    /**
+     * Returns TRUE if the search has been cancelled, in which case null from solve does not mean there is no solution
+     * @return
+     */
+    public boolean isCancelled() {
+    	return cancelled;
     }
 	
     /**
-     * A private constructor. The SAT Solver is only to be used by its solve method.
+     * The constructor used by the others.
+     * @param options
+     * @param numberOfClauses The expected number of clauses, to size clauseArena
      */
-	private SATSolver(int numberOfClauses){
+	private SATSolver(SATSolverOptions options, int numberOfClauses){
 		//Initialize internal data structures.
 		this.sLiteralPool 			= new SLiteralPool();
-		this.clauses 				= new ArrayList	<SClause>(numberOfClauses);
-		this.assignedLiterals 		= new ArrayDeque<SLiteral>();
+		this.clauseArena 			= new SClauseArena(4*numberOfClauses);
+		this.clauses 				= new SIntList(numberOfClauses);
+		this.assignedLiterals 		= new SIntList();
+		this.propagationHead 		= 0;
+		this.binaryPropagationHead 	= 0;
+		this.decisionLevelOffsets 	= new SIntList();
+		this.learnedClauseDatabase 	= new SLearnedClauseDatabase(clauseArena);
+		this.learnClauses 			= options.learnClauses;
+		this.restartPolicy 			= options.createRestartPolicy();
+		this.chronologicalBacktrackingThreshold = options.learnClauses ? options.chronologicalBacktrackingThreshold : 0;
+		this.preprocessor 			= null;
+		this.proof 					= null;
+		this.assumptions 			= new SIntList();
+		this.assumptionLiterals 	= new Literal[0];
+		this.failedAssumptions 		= new SIntList();
+		this.selectors 				= new SIntList();
+		this.conflicts 				= 0;
+		this.decisions 				= 0;
+		this.restarts 				= 0;
+		this.propagations 			= 0;
+		this.status 				= null;
+		this.timeLimit 				= options.timeLimit;
+		this.conflictLimit 			= options.conflictLimit;
+		this.propagationLimit 		= options.propagationLimit;
+		this.outOfBudget 			= false;
+		this.budgetCheckCountdown 	= BUDGET_CHECK_INTERVAL;
+		this.started 				= false;
+		this.emptyClauseFound 		= false;
+		this.applyPureLiteralRule 	= false;
+		this.unitClauses 			= new SIntList();
+		this.literalCodes 			= new SIntList();
+		this.dimacsIndexes 			= new int[1];
+		this.clauseSharing 			= null;
+		this.sharingId 				= 0;
+		this.sharingPosition 		= 0;
+		this.cancelled 				= false;
+		this.localSearch 			= options.localSearch;
+		this.localSearchFlips 		= options.localSearchFlips;
+		this.randomSeed 			= options.randomSeed;
+		this.runningLocalSearch 	= null;
+		this.learnedLiterals 		= new SIntList();
+		this.removedLiterals 		= new SIntList();
+		this.levelMarks 			= new int[16];
+		this.levelMarksStamp 		= 0;
+		this.binaryClause 			= new int[2];
+		this.sLiteralPool.useActivity = (options.learnClauses && options.decisionHeuristic==SATSolverOptions.DecisionHeuristic.ACTIVITY); //Activities are only bumped by conflict analysis
+		this.sLiteralPool.savePhases = options.savePhases;
+		this.sLiteralPool.random = options.randomSeed==0 ? null : new Random(options.randomSeed);
+		ensureVariables(0);
+	}
+	
+	/**
+	 * Gets the SATSolver ready to search: on the first call, runs the SPreprocessor if any and prioritizes the 
+	 * SLiterals, and on later calls makes the variables of the clauses added since available. Then assigns the 
+	 * unit clauses added since.
+	 * @return FALSE if the clauses are known to have no solution, otherwise TRUE.
+	 */
+	private boolean prepare() {
+    	if (!started) {
+    		started = true;
+    		//Simplify the clauses, then search with the ones that are left
+    		if (preprocessor!=null && !emptyClauseFound) {
+    			if (!preprocessor.preprocess()) {
+    				foundEmptyClause();
+    			} else {
+    				for (int[] c:preprocessor.remainingClauses()) {
+    					addClause(c, c.length);
+    				}
+    			}
+    		}
+    		//Prioritize the literals
+    		sLiteralPool.preProcess(values, applyPureLiteralRule);
+    		if (proof!=null) { //The unit clause of a pure literal is a RAT, as no clause contains its inverse counterpart
+    			for (int l=0; l!=2*sLiteralPool.numberOfVariables; ++l) {
+    				if (values[l]==SLiteral.TRUE) {
+    					literalCodes.clear();
+    					literalCodes.add(l);
+    					proof.addClause(literalCodes.data, 0, 1);
+    				}
+    			}
+    		}
+    	} else {
+    		sLiteralPool.addNewVariables();
+    	}
+    	if (emptyClauseFound) {
+    		return false;
+    	}
+    	if (!assignUnitClauses(unitClauses)) {
+    		foundEmptyClause();
+    		return false;
+    	}
+    	unitClauses.clear();
+    	return true;
+	}
+	
+	/**
+	 * Records that the clauses have no solution, whatever the assumptions, ending the proof with the empty clause
+	 */
+	private void foundEmptyClause() {
+		if (proof!=null && !emptyClauseFound) {
+			proof.addClause(literalCodes.data, 0, 0);
+		}
+		emptyClauseFound = true;
+	}
+	
+	/**
+	 * Fills literalCodes with the codes of the SLiterals of a clause
+	 * @param clause
+	 */
+	private void toLiteralCodes(Clause clause) {
+		Iterator<Literal> literalIterator = clause.iterator();
+		literalCodes.clear();
+		while (literalIterator.hasNext()) {
+			literalCodes.add(getLiteralCode(literalIterator.next()));
+		}
+	}
+	
+	/**
+	 * Adds the clause held by literalCodes, to the preprocessor if it has yet to run
+	 */
+	private void addLiteralCodes() {
+		ensureVariables(sLiteralPool.numberOfVariables);
+		if (literalCodes.isEmpty()) {
+			foundEmptyClause();
+		} else if (preprocessor!=null && !started) {
+			preprocessor.addClause(literalCodes.data, literalCodes.size());
+		} else {
+			addClause(literalCodes.data, literalCodes.size());
+		}
+	}
+	
+	/**
+	 * Adds the clause held by literalCodes as read from a file, keeping one of each SLiteral repeated in it, and 
+	 * dropping it if it holds both SLiterals of a variable, as it could not have been made into a Clause
+	 */
+	private void addReadLiteralCodes() {
+		ensureVariables(sLiteralPool.numberOfVariables);
+		int[] data = literalCodes.data;
+		int size = 0;
+		boolean tautology = false;
+		for (int i=0; i!=literalCodes.size(); ++i) {
+			int l = data[i];
+			if (!seen[SLiteral.index(l)]) {
+				seen[SLiteral.index(l)] = true;
+				data[size++] = l;
+			} else {
+				for (int k=0; k!=size; ++k) {
+					tautology |= data[k]==SLiteral.inverse(l);
+				}
+			}
+		}
+		for (int i=0; i!=size; ++i) {
+			seen[SLiteral.index(data[i])] = false;
+		}
+		literalCodes.shrink(size);
+		if (!tautology) {
+			addLiteralCodes();
+		}
+	}
+	
+	/**
+	 * Returns the code of the SLiteral standing for a Literal, creating its variable if it is new
+	 * @param literal
+	 * @return
+	 */
+	private int getLiteralCode(Literal literal) {
+		String variable = literal.getVariable().toString();
+		if (literal instanceof PosLiteral) {
+			return sLiteralPool.getPositiveLiteralWithString(variable);
+		} else {
+			return sLiteralPool.getNegativeLiteralWithString(variable);
+		}
+	}
+	
+	/**
+	 * Returns the code of the SLiteral standing for a signed DIMACS number, creating its variable if it is new
+	 * @param number
+	 * @return
+	 */
+	private int getDimacsLiteralCode(int number) {
+		int variable = Math.abs(number);
+		if (variable>=dimacsIndexes.length) {
+			dimacsIndexes = Arrays.copyOf(dimacsIndexes, Math.max(variable+1, 2*dimacsIndexes.length));
+		}
+		if (dimacsIndexes[variable]==0) {
+			dimacsIndexes[variable] = sLiteralPool.getVariableIndex(Integer.toString(variable))+1;
+		}
+		return SLiteral.code(dimacsIndexes[variable]-1, number<0);
+	}
+	
+	/**
+	 * Stores a clause in clauseArena, counting its SLiterals towards their priority, and attaches it to the 
+	 * watchers of its SLiterals. Unit clauses are kept in unitClauses, to be assigned by the next call to solve.
+	 * As clauses are only added on level 0, SLiterals already FALSE are left out, and a clause already TRUE is dropped.
+	 * @param literalCodes The codes of the SLiterals of the clause, which may be overwritten
+	 * @param length The number of SLiterals in literalCodes to take, at least 1
+	 */
+	private void addClause(int[] literalCodes, int length) {
+		int size = 0;
+		for (int i=0; i!=length; ++i) {
+			int l = literalCodes[i];
+			sLiteralPool.literalAdded(l, PRIORITY_INCREMENT_CONSTANT-length);
+			if (values[l]==SLiteral.TRUE) { 
+				return;
+			} else if (values[l]==SLiteral.UNASSIGNED) {
+				literalCodes[size++] = l;
+			}
+		}
+		if (size==0) {
+			foundEmptyClause();
+			return;
+		}
+		int newClause = clauseArena.allocate(literalCodes, size, false);
+		clauses.add(newClause);
+		if (size==1) {
+			unitClauses.add(newClause);
+		} else if (size==2) {
+			attachBinaryClause(literalCodes[0], literalCodes[1]);
+		} else {
+			attachWatchers(newClause);
+		}
+	}
+	
+	/**
+	 * Makes room in the assignment state for the variables of indexes up to numberOfVariables-1.
+	 * New SLiterals start unassigned, with no watchers.
+	 * @param numberOfVariables
+	 */
+	private void ensureVariables(int numberOfVariables) {
+		int oldCapacity = levels==null ? 0 : levels.length;
+		if (values!=null && numberOfVariables<=oldCapacity) { return; }
+		int capacity = Math.max(numberOfVariables, 2*oldCapacity);
+		values = values==null ? new byte[2*capacity] : Arrays.copyOf(values, 2*capacity);
+		levels = levels==null ? new int[capacity] : Arrays.copyOf(levels, capacity);
+		reasons = reasons==null ? new int[capacity] : Arrays.copyOf(reasons, capacity);
+		Arrays.fill(reasons, oldCapacity, capacity, SClauseArena.NO_CLAUSE);
+		seen = seen==null ? new boolean[capacity] : Arrays.copyOf(seen, capacity);
+		watchers = watchers==null ? new SIntList[2*capacity] : Arrays.copyOf(watchers, 2*capacity);
+		binaryWatchers = binaryWatchers==null ? new SIntList[2*capacity] : Arrays.copyOf(binaryWatchers, 2*capacity);
+		for (int i=2*oldCapacity; i!=2*capacity; ++i) {
+			watchers[i] = new SIntList();
+			binaryWatchers[i] = new SIntList();
+		}
+		sLiteralPool.values = values;
+	}
+	
+	/**
+	 * Assigns the SLiteral of each unit clause to TRUE and pushes it into assignedLiterals for BCP to propagate.
+	 * @param unitClauses Clause references of clauses with exactly one SLiteral
+	 * @return TRUE if no conflict has been found, otherwise FALSE.
+	 */
+	private boolean assignUnitClauses(SIntList unitClauses) {
+		for (int i=0; i!=unitClauses.size(); ++i) {
+			int c = unitClauses.get(i);
+			int l = clauseArena.literal(c, 0);
+			if (values[l]==SLiteral.UNASSIGNED) {
+				assignLiteral(l, c);
+			} else if (values[l]==SLiteral.FALSE) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
-	 * This is the main recursive method of the DPLL algorithm
-	 * @return TRUE if the problem has a solution, else FALSE. Leaves sLiteralPool containing the answer if TRUE.
+	 * This is the main loop of the DPLL algorithm.
+	 * Instead of recursing once per decision, every decision opens a new decision level on assignedLiterals.
+	 * On a conflict with learnClauses, a 1UIP learned clause is added and the search jumps back to the highest level 
+	 * among the other SLiterals of the learned clause, where BCP then assigns its 1UIP SLiteral.
+	 * Otherwise, the last decision level is popped and the inverse counterpart of its decision is assigned 
+	 * on the previous level.
+	 * With chronologicalBacktrackingThreshold, a jump of CDCL back over more levels than that only undoes the last level 
+	 * instead, keeping the work of the others, and the 1UIP SLiteral is assigned on the level it is implied on, below
+	 * the current one. SLiterals may then be on lower levels than others assigned before them, so a conflict first 
+	 * goes back to the highest level among its SLiterals, see backtrackToConflictLevel.
+	 * Either way, a conflict on level 0 means that every branch has been explored.
+	 * When running CDCL, restartPolicy is told about every conflict, and a restart it asks for is done before 
+	 * the next decision.
+	 * The assumptions are decided on first, one per decision level, and a conflict that would undo one of them 
+	 * ends the search, leaving the assumptions responsible in failedAssumptions.
+	 * Before each step, mustStop is asked whether the search has been cancelled or has run out of budget.
+	 * @return TRUE if the problem has a solution, else FALSE, also if it stopped. Leaves values containing the answer if TRUE.
 	 */
-    private boolean attemptSolving(ArrayList<SClause> subClauses){
-    	if (isSolved(subClauses)) { return true; } 	//If solved, end search
+    private boolean attemptSolving(){
+    	boolean restartPending = false;
+    	while (!mustStop()) {
+    		int conflictClause = BCP();
+    		if (conflictClause!=SClauseArena.NO_CLAUSE) { //i.e the last assignment caused a chain reaction of unit clauses that resulted in false
+    			++conflicts;
+    			int decisionLevel = decisionLevelOffsets.size();
+    			if (decisionLevel>0 && chronologicalBacktrackingThreshold>0) {
+    				decisionLevel = backtrackToConflictLevel(conflictClause);
+    				if (decisionLevel<0) { continue; } //The conflict was a missed implication, now assigned
+    			}
+    			if (decisionLevel==0) { 
+    				foundEmptyClause();
+    				return false; 
+    			}
+    			if (learnClauses) {
+    				analyzeConflict(conflictClause);
+    				sLiteralPool.decayActivities();
+    				learnedClauseDatabase.decayActivities();
+    				int learnedSize = learnedLiterals.size();
+    				int lbd = computeLBD(learnedLiterals.data, 0, learnedSize);
+    				if (restartPolicy!=null && restartPolicy.conflictOccurred(lbd, assignedLiterals.size())) {
+    					restartPending = true;
+    				}
+    				if (clauseSharing!=null && SClauseSharingBuffer.isWorthSharing(learnedSize, lbd)) {
+    					clauseSharing.publish(sharingId, learnedLiterals.data, learnedSize, lbd);
+    				}
+    				if (proof!=null) {
+    					proof.addClause(learnedLiterals.data, 0, learnedSize);
+    				}
+    				int assertingLiteral = learnedLiterals.get(0);
+    				int assertionLevel = learnedSize==1 ? 0 : levels[SLiteral.index(learnedLiterals.get(1))];
+    				if (chronologicalBacktrackingThreshold>0 && decisionLevel-assertionLevel>chronologicalBacktrackingThreshold) {
+    					undoAssignmentsToLevel(decisionLevel-1);
+    				} else {
+    					undoAssignmentsToLevel(assertionLevel);
+    				}
+    				if (learnedSize==2) { //Learned binary clauses are never deleted, so they need no database either
+    					attachBinaryClause(assertingLiteral, learnedLiterals.get(1));
+    					assignLiteral(assertingLiteral, SClauseArena.binaryClause(learnedLiterals.get(1)), assertionLevel);
+    				} else {
+    					int learnedClause = clauseArena.allocate(learnedLiterals.data, learnedSize, true);
+    					if (learnedSize>1) { //Learned unit clauses stay on level 0 for good, so they need not be kept track of
+    						attachWatchers(learnedClause);
+    						learnedClauseDatabase.addClause(learnedClause, lbd);
+    					}
+    					assignLiteral(assertingLiteral, learnedClause, assertionLevel);
+    				}
+    			} else if (decisionLevel<=assumptions.size()) { //The decision to flip is an assumption
+    				failedAssumptions = assumptionsUpToLevel(decisionLevel);
+    				return false;
+    			} else {
+    				if (proof!=null) {
+    					writeDecisionClause();
+    				}
+    				int decisionLiteral = assignedLiterals.get(decisionLevelOffsets.get(decisionLevel-1));
+    				undoAssignmentsToLevel(decisionLevel-1);
+    				assignLiteral(SLiteral.inverse(decisionLiteral), SClauseArena.NO_CLAUSE);
+    			}
+    		} else if (learnClauses && learnedClauseDatabase.isReductionDue(conflicts)) {
+    			reduceLearnedClauses();
+    		} else if (clauseSharing!=null && decisionLevelOffsets.isEmpty() && sharingPosition!=clauseSharing.size()) {
+    			if (!importSharedClauses()) {
+    				foundEmptyClause();
+    				return false;
+    			}
+    		} else if (restartPending) {
+    			restartPending = false;
+    			undoAssignmentsToLevel(0);
+    			restartPolicy.restarted();
+    			++restarts;
+    		} else {
+    			//Decide on the next assumption first, giving those already TRUE a decision level of their own
+    			int unassignedLiteral = SLiteral.NO_LITERAL;
+    			while (decisionLevelOffsets.size()<assumptions.size()) {
+    				int assumption = assumptions.get(decisionLevelOffsets.size());
+    				if (values[assumption]==SLiteral.UNASSIGNED) {
+    					unassignedLiteral = assumption;
+    					break;
+    				} else if (values[assumption]==SLiteral.FALSE) {
+    					failedAssumptions = analyzeFailedAssumption(assumption);
+    					return false;
+    				}
+    				decisionLevelOffsets.add(assignedLiterals.size());
+    			}
+    			if (unassignedLiteral==SLiteral.NO_LITERAL) {
+    				unassignedLiteral = sLiteralPool.getUnassignedLiteral();
+    			}
+    			if (unassignedLiteral==SLiteral.NO_LITERAL) { //Every SLiteral is assigned without any conflict
+    				return true;
+    			}
+    			++decisions;
+    			decisionLevelOffsets.add(assignedLiterals.size());
+    			assignLiteral(unassignedLiteral, SClauseArena.NO_CLAUSE);
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Runs a SLocalSearch on the clauses left after level 0, starting from the SLiterals the SLiteralPool would 
+     * decide on. If it satisfies every clause, its assignment is decided on, on a level of its own. Otherwise the 
+     * SLiteralPool is left to decide on the best assignment it found, so that the complete search starts near it.
+     * Must be called on level 0, with every SLiteral of level 0 propagated. Only runs once.
+     * @return TRUE if every variable is assigned without any conflict, otherwise FALSE.
+     */
+    private boolean runLocalSearch() {
+    	int numberOfVariables = sLiteralPool.numberOfVariables;
+    	SLocalSearch search = new SLocalSearch(numberOfVariables, randomSeed);
+    	search.clauseSharing = clauseSharing;
+    	for (int i=0; i!=clauses.size(); ++i) {
+    		int c = clauses.get(i);
+    		int size = 0;
+    		boolean satisfied = false;
+    		literalCodes.clear();
+    		for (int k=0; k!=clauseArena.clauseSize(c) && !satisfied; ++k) {
+    			int l = clauseArena.literal(c, k);
+    			satisfied = values[l]==SLiteral.TRUE;
+    			if (values[l]==SLiteral.UNASSIGNED) {
+    				literalCodes.add(l);
+    				++size;
+    			}
+    		}
+    		if (!satisfied) {
+    			search.addClause(literalCodes.data, size);
+    		}
+    	}
+    	for (int index=0; index!=numberOfVariables; ++index) {
+    		int l = SLiteral.code(index, false);
+    		if (values[l]!=SLiteral.UNASSIGNED) {
+    			search.fix(values[l]==SLiteral.TRUE ? l : SLiteral.inverse(l));
+    		} else if (sLiteralPool.decisionLiterals[index]!=SLiteral.NO_LITERAL) {
+    			search.setPhase(sLiteralPool.decisionLiterals[index]);
+    		}
+    	}
     	
-    	SLiteral lastLiteral = assignedLiterals.peekLast();
-    	if (BCP(subClauses)==false) { //i.e the previous assignment caused a chain reaction of unit clauses that resulted in false
-    		undoAssignmentsToLiteral(lastLiteral);
-    		return false; 
+    	runningLocalSearch = search;
+    	search.cancel(cancelled);
+    	boolean satisfied = search.search(localSearch, localSearchFlips);
+    	runningLocalSearch = null;
+    	localSearch = SATSolverOptions.LocalSearch.NONE;
+    	for (int index=0; index!=numberOfVariables; ++index) {
+    		if (values[SLiteral.code(index, false)]==SLiteral.UNASSIGNED) {
+    			sLiteralPool.decisionLiterals[index] = SLiteral.code(index, !(satisfied ? search.assignment[index] : search.bestAssignment[index]));
+    		}
+    	}
+    	if (!satisfied) {
+    		return false;
+    	}
+    	decisionLevelOffsets.add(assignedLiterals.size());
+    	for (int index=0; index!=numberOfVariables; ++index) {
+    		int l = sLiteralPool.decisionLiterals[index];
+    		if (values[SLiteral.code(index, false)]==SLiteral.UNASSIGNED) {
+    			assignLiteral(l, SClauseArena.NO_CLAUSE);
+    		}
+    	}
+    	return true;
+    }
+    
+    /**
+     * Decides on each SLiteral of a cube not already TRUE, on a decision level of its own, and propagates it.
+     * Must be called on level 0, with every SLiteral of level 0 propagated.
+     * @param cubeCodes The codes of the SLiterals of the cube
+     * @return FALSE if a SLiteral of the cube is FALSE or leads to a conflict, otherwise TRUE.
+     */
+    private boolean assumeCube(SIntList cubeCodes) {
+    	for (int i=0; i!=cubeCodes.size(); ++i) {
+    		int l = cubeCodes.get(i);
+    		if (values[l]==SLiteral.FALSE) {
+    			return false;
+    		} else if (values[l]==SLiteral.UNASSIGNED) {
+    			decisionLevelOffsets.add(assignedLiterals.size());
+    			assignLiteral(l, SClauseArena.NO_CLAUSE);
+    			if (BCP()!=SClauseArena.NO_CLAUSE) {
+    				return false;
+    			}
+    		}
+    	}
+    	return true;
+    }
+    
+    /**
+     * Assigns an unassigned SLiteral on a new decision level, propagates it, and undoes both.
+     * @param l The code of the SLiteral
+     * @param conflictCount What to count if l leads to a conflict
+     * @return The number of SLiterals assigned, including l, or conflictCount if l leads to a conflict.
+     */
+    private int lookahead(int l, int conflictCount) {
+    	int level = decisionLevelOffsets.size();
+    	int offset = assignedLiterals.size();
+    	decisionLevelOffsets.add(offset);
+    	assignLiteral(l, SClauseArena.NO_CLAUSE);
+    	int count = BCP()==SClauseArena.NO_CLAUSE ? assignedLiterals.size()-offset : conflictCount;
+    	undoAssignmentsToLevel(level);
+    	return count;
+    }
+    
+    /**
+     * Sets SLiteral l to TRUE on the current decision level and pushes it into assignedLiterals for BCP to propagate.
+     * @param l The code of the SLiteral
+     * @param reason The clause reference of the clause that implied l, or NO_CLAUSE if l is a decision
+     */
+    private void assignLiteral(int l, int reason) {
+    	assignLiteral(l, reason, decisionLevelOffsets.size());
+    }
+    
+    /**
+     * Sets SLiteral l to TRUE on a decision level up to the current one and pushes it into assignedLiterals for BCP to propagate.
+     * @param l The code of the SLiteral
+     * @param reason The clause reference of the clause that implied l, or NO_CLAUSE if l is a decision
+     * @param level The highest decision level among the other SLiterals of reason, which is the current one 
+     * unless chronological backtracking has left some SLiterals below it
+     */
+    private void assignLiteral(int l, int reason, int level) {
+    	values[l] = SLiteral.TRUE;
+    	values[SLiteral.inverse(l)] = SLiteral.FALSE;
+    	int index = SLiteral.index(l);
+    	levels[index] = level;
+    	reasons[index] = reason;
+    	assignedLiterals.add(l);
+    }
+    
+    /**
+     * Finds the conflict level of a FALSE clause, the highest decision level among its SLiterals, and undoes the levels 
+     * above it, which chronological backtracking may have left. The SLiterals of the two highest levels of a long clause 
+     * are moved to be watched, so that the clause is visited again once they are unassigned.
+     * If only one SLiteral is on the conflict level, the clause should have implied it on the highest level of the others,
+     * which is done instead of learning a clause.
+     * @param conflictClause The clause reference of the clause that evaluates to FALSE
+     * @return The conflict level, or -1 if the conflict was a missed implication, which has now been assigned
+     */
+    private int backtrackToConflictLevel(int conflictClause) {
+    	int first; //A SLiteral of the highest level
+    	int second; //A SLiteral of the highest level among the others
+    	int reason = conflictClause;
+    	if (SClauseArena.isBinaryClause(conflictClause)) {
+    		first = conflictLiteral;
+    		second = SClauseArena.binaryClauseLiteral(conflictClause);
+    		if (levels[SLiteral.index(second)]>levels[SLiteral.index(first)]) {
+    			second = conflictLiteral;
+    			first = SClauseArena.binaryClauseLiteral(conflictClause);
+    		}
+    		reason = SClauseArena.binaryClause(second);
+    	} else {
+    		int[] memory = clauseArena.memory;
+    		int start = conflictClause+1;
+    		int end = start+clauseArena.clauseSize(conflictClause);
+    		int highest = start;
+    		int next = start+1;
+    		if (levels[SLiteral.index(memory[next])]>levels[SLiteral.index(memory[highest])]) {
+    			highest = start+1;
+    			next = start;
+    		}
+    		for (int k=start+2; k!=end; ++k) {
+    			int level = levels[SLiteral.index(memory[k])];
+    			if (level>levels[SLiteral.index(memory[highest])]) {
+    				next = highest;
+    				highest = k;
+    			} else if (level>levels[SLiteral.index(memory[next])]) {
+    				next = k;
+    			}
+    		}
+    		boolean watchesMoved = highest>start+1 || next>start+1;
+    		if (watchesMoved) {
+    			detachWatcher(memory[start], conflictClause);
+    			detachWatcher(memory[start+1], conflictClause);
+    		}
+    		int l = memory[highest];
+    		memory[highest] = memory[start];
+    		memory[start] = l;
+    		if (next==start) {
+    			next = highest;
+    		}
+    		l = memory[next];
+    		memory[next] = memory[start+1];
+    		memory[start+1] = l;
+    		if (watchesMoved) {
+    			attachWatchers(conflictClause);
+    		}
+    		first = memory[start];
+    		second = memory[start+1];
     	}
-    	ArrayList<SClause> subSubClauses = notTrueSubClauses(subClauses);
     	
-    	SLiteral unassignedLiteral = sLiteralPool.getUnassignedLiteral();
-    	if (unassignedLiteral==null) { 
-    		return true; 
-    	} 
-    	unassignedLiteral.setEvalutateToTrue();
-    	assignedLiterals.add(unassignedLiteral);
-    	if (attemptSolving(subSubClauses)) {
-    		return true;
+    	int conflictLevel = levels[SLiteral.index(first)];
+    	int secondLevel = levels[SLiteral.index(second)];
+    	if (conflictLevel==secondLevel) {
+    		undoAssignmentsToLevel(conflictLevel);
+    		return conflictLevel;
     	}
-    	unassignedLiteral.invertValue();
-    	if (attemptSolving(subSubClauses)) {
-    		return true;
+    	undoAssignmentsToLevel(conflictLevel-1);
+    	assignLiteral(first, reason, secondLevel);
+    	return -1;
+    }
+    
+    /**
+     * Derives the 1UIP learned clause of a conflict by resolving conflictClause with the reasons of the SLiterals 
+     * assigned on the current decision level, walking assignedLiterals backwards until only one of them is left.
+     * SLiterals implied by the others in the learned clause are then removed.
+     * The codes of the SLiterals of the learned clause are left in learnedLiterals, with the 1UIP SLiteral first 
+     * and a SLiteral of the highest remaining level second.
+     * @param conflictClause The clause reference of the clause that evaluates to FALSE
+     */
+    private void analyzeConflict(int conflictClause) {
+    	int[] memory = clauseArena.memory;
+    	learnedLiterals.clear();
+    	learnedLiterals.add(0); //Reserved for the 1UIP SLiteral
+    	int decisionLevel = decisionLevelOffsets.size();
+    	int pathCount = 0; //The number of seen SLiterals of the current decision level yet to be resolved
+    	int index = assignedLiterals.size()-1;
+    	int impliedLiteral = SLiteral.NO_LITERAL;
+    	int reason = conflictClause;
+    	
+    	do {
+    		int[] reasonLiterals = memory;
+    		int reasonStart = reason+1;
+    		int reasonEnd;
+    		if (SClauseArena.isBinaryClause(reason)) {
+    			reasonLiterals = binaryClause;
+    			reasonStart = 0;
+    			reasonEnd = 2;
+    			binaryClause[0] = impliedLiteral==SLiteral.NO_LITERAL ? conflictLiteral : impliedLiteral;
+    			binaryClause[1] = SClauseArena.binaryClauseLiteral(reason);
+    		} else {
+    			if (clauseArena.isLearned(reason)) {
+    				learnedClauseDatabase.clauseUsed(reason, computeLBD(memory, reason+1, clauseArena.clauseSize(reason)));
+    			}
+    			reasonEnd = reason+1+clauseArena.clauseSize(reason);
+    		}
+    		for (int i=reasonStart; i!=reasonEnd; ++i) {
+    			int l = reasonLiterals[i];
+    			int variable = SLiteral.index(l);
+    			if (l==impliedLiteral || seen[variable] || levels[variable]==0) { continue; }
+    			seen[variable] = true;
+    			sLiteralPool.bumpActivity(variable);
+    			if (levels[variable]==decisionLevel) {
+    				++pathCount;
+    			} else {
+    				learnedLiterals.add(l);
+    			}
+    		}
+    		//Look for the last assigned SLiteral of the current level that has been seen, skipping those of lower levels left after it
+    		while (!seen[SLiteral.index(assignedLiterals.get(index))] || levels[SLiteral.index(assignedLiterals.get(index))]!=decisionLevel) { --index; }
+    		impliedLiteral = assignedLiterals.get(index--);
+    		seen[SLiteral.index(impliedLiteral)] = false;
+    		reason = reasons[SLiteral.index(impliedLiteral)];
+    		--pathCount;
+    	} while (pathCount>0);
+    	learnedLiterals.set(0, SLiteral.inverse(impliedLiteral));
+    	
+    	//Remove the SLiterals whose reasons only consist of SLiterals already in the learned clause
+    	int learnedSize = learnedLiterals.size();
+    	int j = 1;
+    	for (int i=1; i!=learnedSize; ++i) {
+    		int l = learnedLiterals.get(i);
+    		if (!isImpliedBySeenLiterals(l)) {
+    			learnedLiterals.set(j++, l);
+    		}
+    		removedLiterals.add(l);
     	}
-    	undoAssignmentsToLiteral(lastLiteral);
-    	return false;
+    	for (int i=0; i!=removedLiterals.size(); ++i) {
+    		seen[SLiteral.index(removedLiterals.get(i))] = false;
+    	}
+    	removedLiterals.clear();
+    	learnedLiterals.shrink(j);
+    	
+    	//Put a SLiteral of the highest remaining level second, so that it is watched after jumping back
+    	learnedSize = j;
+    	int highestIndex = 1;
+    	for (int i=2; i<learnedSize; ++i) {
+    		if (levels[SLiteral.index(learnedLiterals.get(i))]>levels[SLiteral.index(learnedLiterals.get(highestIndex))]) {
+    			highestIndex = i;
+    		}
+    	}
+    	if (learnedSize>1) {
+    		int highest = learnedLiterals.get(highestIndex);
+    		learnedLiterals.set(highestIndex, learnedLiterals.get(1));
+    		learnedLiterals.set(1, highest);
+    	}
+    }
+    
+    /**
+     * Finds the assumptions that imply the inverse counterpart of a FALSE assumption, by following the reasons 
+     * back from it. Only assumptions are decided on the decision levels of assumptions, so every decision reached 
+     * is an assumption.
+     * @param assumption The code of the FALSE assumption
+     * @return The codes of the failed assumptions, including assumption
+     */
+    private SIntList analyzeFailedAssumption(int assumption) {
+    	SIntList failed = new SIntList();
+    	failed.add(assumption);
+    	int variable = SLiteral.index(assumption);
+    	if (levels[variable]==0) {
+    		return failed;
+    	}
+    	seen[variable] = true;
+    	for (int i=assignedLiterals.size()-1; i>=decisionLevelOffsets.get(0); --i) {
+    		int l = assignedLiterals.get(i);
+    		int index = SLiteral.index(l);
+    		if (!seen[index]) { continue; }
+    		seen[index] = false;
+    		int reason = reasons[index];
+    		if (reason==SClauseArena.NO_CLAUSE) {
+    			failed.add(l);
+    		} else if (SClauseArena.isBinaryClause(reason)) {
+    			int r = SLiteral.index(SClauseArena.binaryClauseLiteral(reason));
+    			seen[r] |= levels[r]!=0;
+    		} else {
+    			for (int k=0; k!=clauseArena.clauseSize(reason); ++k) {
+    				int r = SLiteral.index(clauseArena.literal(reason, k));
+    				seen[r] |= (r!=index && levels[r]!=0);
+    			}
+    		}
+    	}
+    	return failed;
     }
     
     /**
-     * Returns an ArrayList of SClause that are yet to be determined to be TRUE
-     * @param subClauses
+     * Returns the codes of the assumptions decided on up to a decision level, when a conflict cannot be traced back to them 
+     * because plain DPLL leaves flipped decisions without a reason
+     * @param level
      * @return
      */
-    private ArrayList<SClause> notTrueSubClauses(ArrayList<SClause> subClauses) {
-    	int subClausesSize = subClauses.size();
-    	ArrayList<SClause> newSubClauses = new ArrayList<SClause>(subClausesSize>>3);
-    	for (int i=0; i!=subClausesSize; ++i) {
-    		SClause c = subClauses.get(i);
-    		if (!c.isTrue()) { newSubClauses.add(c); }
+    private SIntList assumptionsUpToLevel(int level) {
+    	SIntList failed = new SIntList();
+    	for (int i=0; i!=level; ++i) {
+    		failed.add(assumptions.get(i));
     	}
-    	return newSubClauses;
+    	return failed;
     }
     
     /**
-     * This is the Boolean Constraint Propagation method.
-     * It can assign SLiterals to TRUE or FALSE by iterating through subClauses for "unit clauses". 
-     * It will push any newly assigned SLiterals into assignedLiterals
-     * Thus, care must be taken to unassign any SLiteral that has been assigned by it if necessary, such as backtracking.
-     * @param subClauses
-     * @return TRUE if no conflict has been found, otherwise FALSE.
-     */
-    private boolean BCP(ArrayList<SClause> subClauses) {    	
-    	boolean finished = false;
-    	int subClausesSize = subClauses.size();
-    	while (!finished) {
-    		finished = true;
-        	for (int i=0; i!=subClausesSize; ++i) {
-        		SClause c = subClauses.get(i);
-        		if (!c.ignoreByBCP){ //If clause has not yet been marked by BCP as ignorable
-	    			SLiteral unitLiteral = c.unassignedLiteralIfUnitClause();
-	    			if (unitLiteral!=null) { 
-	    				finished = false;
-	    				c.ignoreByBCP = true;
-	    				unitLiteral.setEvalutateToTrue();
-	    				assignedLiterals.addLast(unitLiteral);
-	    			} else if (c.isTrue()) {
-	    				c.ignoreByBCP = true;
-	    			} else if (c.isFalse()) { //Some unit clause caused a false to pop out... this means a dead end!
-	    		    	resetIgnoreByBCP(subClauses);
-	    				return false;
-	    			}
-        		}
+     * Returns the Literals that some assumptions were given as
+     * @param codes The codes of the assumptions
+     * @return
+     */
+    private ImList<Literal> toAssumptionLiterals(SIntList codes) {
+    	ImList<Literal> result = new EmptyImList<Literal>();
+    	for (int i=assumptions.size()-1; i>=0; --i) {
+    		for (int k=0; k!=codes.size(); ++k) {
+    			if (codes.get(k)==assumptions.get(i) && !result.contains(assumptionLiterals[i])) {
+    				result = result.add(assumptionLiterals[i]);
+    				break;
+    			}
+    		}
+    	}
+    	return result;
+    }
+    
+    /**
+     * Adds the clauses published to clauseSharing by the other SATSolvers since the last import, as learned clauses.
+     * Must be called on level 0, where SLiterals already FALSE are left out and clauses already TRUE are dropped.
+     * Imported unit clauses are assigned, for BCP to propagate.
+     * @return FALSE if an imported clause is FALSE on level 0, otherwise TRUE.
+     */
+    private boolean importSharedClauses() {
+    	long end = clauseSharing.size();
+    	sharingPosition = Math.max(sharingPosition, clauseSharing.oldestPosition(end));
+    	for (; sharingPosition!=end; ++sharingPosition) {
+    		int lbd = clauseSharing.read(sharingPosition, sharingId, literalCodes);
+    		if (lbd==0) { continue; }
+    		int size = 0;
+    		boolean satisfied = false;
+    		for (int i=0; i!=literalCodes.size && !satisfied; ++i) {
+    			int l = literalCodes.data[i];
+    			satisfied = values[l]==SLiteral.TRUE;
+    			if (values[l]==SLiteral.UNASSIGNED) {
+    				literalCodes.data[size++] = l;
+    			}
+    		}
+    		if (satisfied) { continue; }
+    		if (size==0) { 
+    			++sharingPosition;
+    			return false;
+    		} else if (size==1) {
+    			assignLiteral(literalCodes.data[0], clauseArena.allocate(literalCodes.data, 1, true));
+    		} else if (size==2) {
+    			attachBinaryClause(literalCodes.data[0], literalCodes.data[1]);
+    		} else {
+    			int importedClause = clauseArena.allocate(literalCodes.data, size, true);
+    			attachWatchers(importedClause);
+    			learnedClauseDatabase.addClause(importedClause, Math.min(lbd, size));
     		}
-
     	}
-    	resetIgnoreByBCP(subClauses);
     	return true;
     }
-
+    
+    /**
+     * Writes the clause that rules out the current decisions to the proof, for plain DPLL to flip the last one. 
+     * Each flipped decision is implied by the clause written when it was flipped, so unit propagation of the 
+     * decisions leads to the conflict again, and the clause is RUP.
+     */
+    private void writeDecisionClause() {
+    	literalCodes.clear();
+    	for (int level=0; level!=decisionLevelOffsets.size(); ++level) {
+    		int offset = decisionLevelOffsets.get(level);
+    		int end = level+1==decisionLevelOffsets.size() ? assignedLiterals.size() : decisionLevelOffsets.get(level+1);
+    		if (offset!=end) { //Assumptions already TRUE leave their decision levels empty
+    			literalCodes.add(SLiteral.inverse(assignedLiterals.get(offset)));
+    		}
+    	}
+    	proof.addClause(literalCodes.data, 0, literalCodes.size());
+    }
+    
     /**
-     * A method used by BCP() to reset all SClauses marked as ignorableByBCP.
-     * Ignorable clauses are either already TRUE, or set to be TRUE by unit clause detection. 
-     * @param subClauses
+     * Deletes the least useful learned clauses from learnedClauseDatabase, and detaches them from the watchers 
+     * of their SLiterals.
      */
-    private void resetIgnoreByBCP(ArrayList<SClause> subClauses) {
-    	int subClausesSize = subClauses.size();
-    	for (int i=0; i!=subClausesSize; ++i) {
-    		SClause c = subClauses.get(i);
-    		c.ignoreByBCP = false;
+    private void reduceLearnedClauses() {
+    	SIntList deletedClauses = learnedClauseDatabase.reduce(conflicts, values, reasons);
+    	//Each SLiteral watching a deleted clause is cleaned once
+    	SIntList watchedLiterals = new SIntList();
+    	boolean[] cleaned = new boolean[watchers.length];
+    	for (int i=0; i!=deletedClauses.size(); ++i) {
+    		int c = deletedClauses.get(i);
+    		if (proof!=null) {
+    			proof.deleteClause(clauseArena.memory, c+1, clauseArena.clauseSize(c));
+    		}
+    		for (int k=0; k!=2; ++k) {
+    			int l = clauseArena.literal(c, k);
+    			if (!cleaned[l]) {
+    				cleaned[l] = true;
+    				watchedLiterals.add(l);
+    			}
+    		}
+    	}
+    	for (int i=0; i!=watchedLiterals.size(); ++i) {
+    		removeDeletedWatchers(watchers[watchedLiterals.get(i)]);
+    	}
+    	if (clauseArena.isCompactionDue()) {
+    		compactClauseArena();
     	}
     }
     
     /**
-     * A method to read from the assignedLiterals stack and unassign all literals that have been added after SLiteral s
-     * @param s
+     * Moves every live clause into a new SClauseArena, reclaiming the memory of deleted clauses, 
+     * and replaces every clause reference held by the SATSolver with the new one.
      */
-    private void undoAssignmentsToLiteral(SLiteral s) {
-    	while (assignedLiterals.peekLast()!=s) {
-    		if (assignedLiterals.peekLast()==null) { return; }
-    		SLiteral lastLiteral = assignedLiterals.removeLast();
-    		lastLiteral.setUnassigned();
+    private void compactClauseArena() {
+    	SClauseArena newArena = new SClauseArena(clauseArena.size-clauseArena.wasted);
+    	//Reasons first, then watchers, so that clauses used together tend to stay close together
+    	for (int i=0; i!=assignedLiterals.size(); ++i) {
+    		int index = SLiteral.index(assignedLiterals.get(i));
+    		if (reasons[index]>=0) { //Decisions and binary clauses have nothing to relocate
+    			reasons[index] = clauseArena.relocate(reasons[index], newArena);
+    		}
     	}
+    	for (int code=0; code!=watchers.length; ++code) {
+    		SIntList w = watchers[code];
+    		for (int i=0; i<w.size; i+=2) {
+    			w.data[i] = clauseArena.relocate(w.data[i], newArena);
+    		}
+    	}
+    	for (int i=0; i!=clauses.size; ++i) {
+    		clauses.data[i] = clauseArena.relocate(clauses.data[i], newArena);
+    	}
+    	learnedClauseDatabase.relocate(newArena);
+    	clauseArena = newArena;
     }
     
     /**
-     * Check if the subClauses consists entirely of SClauses that evaluate to TRUE
-     * @param subClauses
-     * @return TRUE if solved, otherwise FALSE
+     * Adds a binary clause to binaryWatchers
+     * @param first The code of an SLiteral of the clause
+     * @param second The code of the other SLiteral of the clause
      */
-    private boolean isSolved(ArrayList<SClause> subClauses){
-    	int subClausesSize = subClauses.size();
-    	for (int i=0; i!=subClausesSize; ++i) {
-    		SClause c = subClauses.get(i);
-    		if (!c.isTrue()) return false; 
+    private void attachBinaryClause(int first, int second) {
+    	binaryWatchers[first].add(second);
+    	binaryWatchers[second].add(first);
+    }
+    
+    /**
+     * Adds a clause to the watchers of its first two SLiterals, each with the other SLiteral as blocker.
+     * Must only be called on clauses with at least 2 SLiterals.
+     * @param ref The clause reference of the clause
+     */
+    private void attachWatchers(int ref) {
+    	int first = clauseArena.literal(ref, 0);
+    	int second = clauseArena.literal(ref, 1);
+    	watchers[first].add(ref, second);
+    	watchers[second].add(ref, first);
+    }
+    
+    /**
+     * Removes a clause from the watchers of one of its SLiterals
+     * @param l The code of the SLiteral
+     * @param ref The clause reference of the clause
+     */
+    private void detachWatcher(int l, int ref) {
+    	SIntList w = watchers[l];
+    	int[] data = w.data;
+    	for (int i=0; i<w.size; i+=2) {
+    		if (data[i]==ref) {
+    			data[i] = data[w.size-2];
+    			data[i+1] = data[w.size-1];
+    			w.shrink(w.size-2);
+    			return;
+    		}
+    	}
+    }
+    
+    /**
+     * Removes the watchers of deleted clauses from a watcher list
+     * @param w
+     */
+    private void removeDeletedWatchers(SIntList w) {
+    	int[] data = w.data;
+    	int watchersSize = w.size;
+    	int j = 0;
+    	for (int i=0; i<watchersSize; i+=2) {
+    		if (!clauseArena.isDeleted(data[i])) {
+    			data[j++] = data[i];
+    			data[j++] = data[i+1];
+    		}
+    	}
+    	w.shrink(j);
+    }
+    
+    /**
+     * Returns the number of different decision levels among some assigned SLiterals
+     * @param literalCodes An array holding the codes of the SLiterals
+     * @param start The position of the first code in literalCodes
+     * @param length The number of codes
+     * @return
+     */
+    private int computeLBD(int[] literalCodes, int start, int length) {
+    	if (levelMarks.length<=decisionLevelOffsets.size()) {
+    		levelMarks = new int[2*decisionLevelOffsets.size()+1];
+    	}
+    	int stamp = ++levelMarksStamp;
+    	int lbd = 0;
+    	int end = start+length;
+    	for (int i=start; i!=end; ++i) {
+    		int level = levels[SLiteral.index(literalCodes[i])];
+    		if (levelMarks[level]!=stamp) {
+    			levelMarks[level] = stamp;
+    			++lbd;
+    		}
+    	}
+    	return lbd;
+    }
+    
+    /**
+     * Returns TRUE if the false SLiteral l was implied by a reason whose other SLiterals are all seen or on level 0.
+     * @param l The code of the SLiteral
+     * @return
+     */
+    private boolean isImpliedBySeenLiterals(int l) {
+    	int reason = reasons[SLiteral.index(l)];
+    	if (reason==SClauseArena.NO_CLAUSE) { return false; }
+    	if (SClauseArena.isBinaryClause(reason)) {
+    		int r = SLiteral.index(SClauseArena.binaryClauseLiteral(reason));
+    		return seen[r] || levels[r]==0;
+    	}
+    	int reasonSize = clauseArena.clauseSize(reason);
+    	for (int i=0; i!=reasonSize; ++i) {
+    		int r = SLiteral.index(clauseArena.literal(reason, i));
+    		if (r!=SLiteral.index(l) && !seen[r] && levels[r]!=0) { return false; }
+    	}
+    	return true;
+    }
+    
+    /**
+     * This is the Boolean Constraint Propagation method.
+     * It walks assignedLiterals from propagationHead, and for each newly assigned SLiteral only visits the clauses 
+     * watching its inverse counterpart. The binary clauses of every newly assigned SLiteral are propagated first, 
+     * walking assignedLiterals from binaryPropagationHead, as they need no clause to be looked into. A visited clause either finds another non-false SLiteral to watch, 
+     * or has become a "unit clause" whose remaining watched SLiteral is set to TRUE and pushed into assignedLiterals.
+     * A SLiteral is implied on the highest level among the other SLiterals of its clause. With chronological backtracking, 
+     * that may be below the current level, and the FALSE SLiteral of that level is moved to be watched, so that the clause 
+     * becomes unit again if the SLiteral is unassigned while the others are kept.
+     * Thus, care must be taken to unassign any SLiteral that has been assigned by it if necessary, such as backtracking.
+     * @return NO_CLAUSE if no conflict has been found, otherwise the clause reference of the clause that evaluates to FALSE.
+     * A FALSE binary clause is referred to by binaryClause of one SLiteral, with the other left in conflictLiteral.
+     */
+    private int BCP() {
+    	byte[] values = this.values;
+    	int[] memory = clauseArena.memory;
+    	while (propagationHead!=assignedLiterals.size) {
+    		while (binaryPropagationHead!=assignedLiterals.size) {
+    			int falseCode = SLiteral.inverse(assignedLiterals.data[binaryPropagationHead++]);
+    			int falseLevel = levels[SLiteral.index(falseCode)];
+    			SIntList implied = binaryWatchers[falseCode];
+    			int[] impliedData = implied.data;
+    			int impliedSize = implied.size;
+    			for (int i=0; i!=impliedSize; ++i) {
+    				int code = impliedData[i];
+    				byte value = values[code];
+    				if (value==SLiteral.TRUE) { continue; }
+    				if (value==SLiteral.FALSE) { //Both SLiterals are false... this means a dead end!
+    					conflictLiteral = falseCode;
+    					propagationHead = binaryPropagationHead = assignedLiterals.size;
+    					return SClauseArena.binaryClause(code);
+    				}
+    				assignLiteral(code, SClauseArena.binaryClause(falseCode), falseLevel);
+    			}
+    		}
+    		
+    		int falseCode = SLiteral.inverse(assignedLiterals.data[propagationHead++]);
+    		++propagations;
+    		SIntList falseWatchers = watchers[falseCode];
+    		int[] watcherData = falseWatchers.data;
+    		int watchersSize = falseWatchers.size;
+    		int i=0, j=0;
+    		while (i!=watchersSize) {
+    			int clause = watcherData[i];
+    			int blockerCode = watcherData[i+1];
+    			i += 2;
+    			if (values[blockerCode]==SLiteral.TRUE) { //Clause already TRUE, no need to look into it
+    				watcherData[j++] = clause;
+    				watcherData[j++] = blockerCode;
+    				continue;
+    			}
+    			
+    			//Make sure the false SLiteral is the second watched SLiteral
+    			int start = clause+1;
+    			int firstCode = memory[start];
+    			if (firstCode==falseCode) {
+    				firstCode = memory[start+1];
+    				memory[start] = firstCode;
+    				memory[start+1] = falseCode;
+    			}
+    			byte firstValue = values[firstCode];
+    			if (firstValue==SLiteral.TRUE) {
+    				watcherData[j++] = clause;
+    				watcherData[j++] = firstCode;
+    				continue;
+    			}
+    			
+    			//Look for a new SLiteral to watch
+    			boolean newWatchFound = false;
+    			int end = start+(memory[clause]>>>SClauseArena.SIZE_SHIFT);
+    			for (int k=start+2; k!=end; ++k) {
+    				int code = memory[k];
+    				if (values[code]!=SLiteral.FALSE) {
+    					memory[start+1] = code;
+    					memory[k] = falseCode;
+    					watchers[code].add(clause, firstCode);
+    					newWatchFound = true;
+    					break;
+    				}
+    			}
+    			if (newWatchFound) { continue; }
+    			
+    			//The clause is unit or false
+    			if (chronologicalBacktrackingThreshold>0 && firstValue!=SLiteral.FALSE) {
+    				int highest = start+1;
+    				for (int k=start+2; k!=end; ++k) {
+    					if (levels[SLiteral.index(memory[k])]>levels[SLiteral.index(memory[highest])]) {
+    						highest = k;
+    					}
+    				}
+    				if (highest!=start+1) {
+    					memory[start+1] = memory[highest];
+    					memory[highest] = falseCode;
+    					watchers[memory[start+1]].add(clause, firstCode);
+    					assignLiteral(firstCode, clause, levels[SLiteral.index(memory[start+1])]);
+    					continue;
+    				}
+    			}
+    			watcherData[j++] = clause;
+    			watcherData[j++] = firstCode;
+    			if (firstValue==SLiteral.FALSE) { //Every SLiteral is false... this means a dead end!
+    				while (i!=watchersSize) { watcherData[j++] = watcherData[i++]; }
+    				falseWatchers.shrink(j);
+    				propagationHead = binaryPropagationHead = assignedLiterals.size;
+    				return clause;
+    			}
+    			assignLiteral(firstCode, clause, levels[SLiteral.index(falseCode)]);
+    		}
+    		falseWatchers.shrink(j);
+    	}
+    	return SClauseArena.NO_CLAUSE;
+    }
+    
+    /**
+     * A method to pop the assignedLiterals stack and unassign all literals that have been assigned after decision level.
+     * SLiterals assigned after it but on a level up to it, which chronological backtracking leaves, are kept in order 
+     * and propagated again, since the clauses they were propagated through may be watched by SLiterals unassigned now.
+     * @param level The decision level to return to
+     */
+    private void undoAssignmentsToLevel(int level) {
+    	if (decisionLevelOffsets.size()<=level) { return; }
+    	int offset = decisionLevelOffsets.get(level);
+    	for (int i=assignedLiterals.size()-1; i>=offset; --i) {
+    		int l = assignedLiterals.get(i);
+    		if (levels[SLiteral.index(l)]>level) {
+    			values[l] = values[SLiteral.inverse(l)] = SLiteral.UNASSIGNED;
+    			sLiteralPool.literalUnassigned(l);
+    		}
+    	}
+    	int j = offset;
+    	if (chronologicalBacktrackingThreshold>0) {
+    		for (int i=offset; i!=assignedLiterals.size(); ++i) {
+    			int l = assignedLiterals.get(i);
+    			if (values[l]==SLiteral.TRUE) {
+    				assignedLiterals.set(j++, l);
+    			}
+    		}
+    	}
+    	assignedLiterals.shrink(j);
+    	decisionLevelOffsets.shrink(level);
+    	if (propagationHead>offset) {
+    		propagationHead = offset;
+    	}
+    	if (binaryPropagationHead>offset) {
+    		binaryPropagationHead = offset;
     	}
-    	return true; 
     }
 
 }
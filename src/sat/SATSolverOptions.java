@@ -0,0 +1,84 @@
+package sat;
+
+/**
+ * This class holds the settings that a SATSolver is created with.
+ * The default constructor gives the settings used by SATSolver.solve(Formula).
+ *
+ * Class Dependencies:
+ * SATSolver, SLubyRestartPolicy, SGlucoseRestartPolicy, SPreprocessor, SLocalSearch, SProofWriter, SCompiledInstance
+ */
+public class SATSolverOptions {
+
+	/**
+	 * The ways a SATSolver can pick the next SLiteral to decide on
+	 */
+	public enum DecisionHeuristic {
+		STATIC,		//By the priority computed once from the occurrences of each SLiteral
+		ACTIVITY	//By the activity of each variable, bumped whenever it takes part in a conflict (EVSIDS). Only used if learnClauses, otherwise STATIC
+	}
+
+	/**
+	 * The SRestartPolicy of a SATSolver running CDCL
+	 */
+	public enum RestartPolicy {
+		NONE,		//Never restart
+		LUBY,		//SLubyRestartPolicy
+		GLUCOSE		//SGlucoseRestartPolicy
+	}
+
+	/**
+	 * The SLocalSearch a SATSolver runs before its complete search
+	 */
+	public enum LocalSearch {
+		NONE,		//Start the complete search at once
+		WALKSAT,	//Flip the variable of lowest break count, or a random one with some noise
+		PROBSAT		//Flip a variable with a probability that falls with its break count
+	}
+
+	public boolean learnClauses; //TRUE to run CDCL, FALSE to run plain DPLL
+	public DecisionHeuristic decisionHeuristic; //How to pick the next SLiteral to decide on
+	public RestartPolicy restartPolicy; //When to restart, only used if learnClauses
+	public int chronologicalBacktrackingThreshold; //Jumps back over more decision levels than this only undo the last one instead, 0 to always jump. Around 100 suits most problems. Only used if learnClauses
+	public boolean savePhases; //TRUE to decide on the value each variable was last assigned, instead of a fixed value
+	public LocalSearch localSearch; //The local search to run first, which either finds a solution or leaves its best assignment as the phases to decide on
+	public long localSearchFlips; //The number of flips the local search may make
+	public String proofFileName; //The file to write a binary DRAT proof to, null for none. Turns preprocess off, whose steps are not logged. Only used by the static SATSolver.solve methods; an incremental SATSolver logs to the SProofWriter in SATSolver.proof
+	public long randomSeed; //Seeds the initial activities and phases of the variables, 0 to leave them to the priorities
+	public long timeLimit; //The milliseconds each call to solve may search for before giving up with SATSolver.status UNKNOWN, which the static SATSolver.solve methods throw as SATSolver.UnknownResultException, 0 for no limit
+	public long conflictLimit; //The number of conflicts each call to solve may have before giving up, 0 for no limit
+	public long propagationLimit; //The number of SLiterals each call to solve may propagate before giving up, 0 for no limit
+	public String instanceCacheDirectory; //Where CNF files read by SATSolver.solve(String, boolean, SATSolverOptions) and CNFParser.solverFromFile are compiled to, to load faster the next time, null for no cache. See SCompiledInstance
+	public boolean preprocess; //TRUE to simplify the clauses with a SPreprocessor before searching. Only used by SATSolver.solve(Formula), since it cannot be undone for clauses added later
+
+	/**
+	 * Default constructor
+	 */
+	public SATSolverOptions() {
+		this.learnClauses = false;
+		this.decisionHeuristic = DecisionHeuristic.STATIC;
+		this.restartPolicy = RestartPolicy.NONE;
+		this.savePhases = false;
+		this.preprocess = false;
+		this.randomSeed = 0;
+		this.proofFileName = null;
+		this.instanceCacheDirectory = null;
+		this.localSearch = LocalSearch.NONE;
+		this.localSearchFlips = 0;
+		this.timeLimit = 0;
+		this.conflictLimit = 0;
+		this.propagationLimit = 0;
+		this.chronologicalBacktrackingThreshold = 0;
+	}
+	
+	/**
+	 * Creates the SRestartPolicy selected by restartPolicy
+	 * @return A new SRestartPolicy, or null for RestartPolicy.NONE
+	 */
+	public SRestartPolicy createRestartPolicy() {
+		switch (restartPolicy) {
+		case LUBY:		return new SLubyRestartPolicy();
+		case GLUCOSE:	return new SGlucoseRestartPolicy();
+		default:		return null;
+		}
+	}
+}
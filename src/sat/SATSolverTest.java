@@ -2,10 +2,26 @@ package sat;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
 import org.junit.Test;
 
+import sat.env.Bool;
 import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
 import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PosLiteral;
 
 /**
  * A testing suite for the SATSolver
@@ -35,6 +51,33 @@ public class SATSolverTest {
 		test.testSATSolver13();
 		test.testSATSolver14();
 		test.testSATSolver15();
+		test.testSATSolver16();
+		test.testSATSolver17();
+		test.testSATSolver18();
+		test.testSATSolver19();
+		test.testSATSolver20();
+		test.testSATSolver21();
+		test.testSATSolver22();
+		test.testSATSolver23();
+		test.testSATSolver24();
+		test.testSATSolver25();
+		test.testSATSolver26();
+		test.testSATSolver27();
+		test.testSATSolver28();
+		test.testSATSolver29();
+		test.testSATSolver30();
+		test.testSATSolver31();
+		test.testSATSolver32();
+		test.testSATSolver33();
+		test.testSATSolver34();
+		test.testSATSolver35();
+		test.testSATSolver36();
+		test.testSATSolver37();
+		test.testSATSolver38();
+		test.testSATSolver39();
+		test.testSATSolver40();
+		test.testSATSolver41();
+		test.testSATSolver42();
 		*/
 		
 		//Benchmark solving a file
@@ -79,6 +122,21 @@ public class SATSolverTest {
 	public void assertSatisfiable(Environment e){
 		assertNotEquals(null, e);
 	}
+	/**
+	 * Asserts that e is a solution, satisfying every clause of formula
+	 */
+	public void assertSatisfies(Formula formula, Environment e){
+		assertSatisfiable(e);
+		Iterator<Clause> clauses = formula.iterator();
+		while (clauses.hasNext()) {
+			Clause clause = clauses.next();
+			boolean satisfied = false;
+			for (Literal literal:clause) {
+				satisfied |= e.get(literal.getVariable())==(literal instanceof PosLiteral ? Bool.TRUE : Bool.FALSE);
+			}
+			assertTrue("Not satisfied: " + clause, satisfied);
+		}
+	}
 	
     @Test
     public void testSATSolver1(){
@@ -397,4 +455,1000 @@ public class SATSolverTest {
     	System.out.println("\n\n-----------------------------------------------------------\n\n");
     }
     
+    @Test
+    public void testSATSolver16(){
+        // Towers of Hanoi 4, solved with clause learning:  Satisfiable
+    	String fileName = "test_cases/hanoi4_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 16 SAT solver starts: Hanoi 4 Problem (CDCL) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver17(){
+        // 16 Queens Problem, decided by activity:  Satisfiable
+    	String fileName = "test_cases/16queens_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 17 SAT solver starts: 16 Queens Problem (CDCL, Activity) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver18(){
+        // 100 Subsets Problem, with restarts and phase saving:  Satisfiable
+    	String fileName = "test_cases/100sub_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 18 SAT solver starts: 100 Subsets Problem (CDCL, Luby Restarts) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.LUBY;
+    	options.savePhases = true;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver19(){
+        // Towers of Hanoi 4, preprocessed before clause learning:  Satisfiable
+    	String fileName = "test_cases/hanoi4_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 19 SAT solver starts: Towers of Hanoi 4 (Preprocessing, CDCL) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.preprocess = true;
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver20(){
+        // Zebra, solved incrementally under assumptions:  Satisfiable, except under contradicting assumptions
+    	String fileName = "test_cases/zebra_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 20 SAT solver starts: Zebra (Incremental, CDCL) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	Literal a = PosLiteral.make("x"); //Not in the Formula
+    	
+		long started = System.nanoTime();
+		SATSolver solver = new SATSolver(options);
+		solver.addFormula(formula);
+		assertSatisfiable(solver.solve());
+		
+		//Assuming both a and its negation fails on both, though a is a new variable
+		assertUnsatisfiable(solver.solve(a, a.getNegation()));
+		assertEquals(2, solver.getFailedAssumptions().size());
+		
+		//Once the negation of a is added as a clause, assuming a alone fails, but the clauses still have a solution
+		solver.addClause(new Clause(a.getNegation()));
+		assertUnsatisfiable(solver.solve(a));
+		assertTrue(solver.getFailedAssumptions().contains(a));
+		Environment e = solver.solve();
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfiable(e);
+		assertEquals(Bool.FALSE, e.get(new Variable("x")));
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver21(){
+        // Pigeon Hole 6, solved by a portfolio of 4 threads:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 21 SAT solver starts: Pigeon Hole 6 (Portfolio, 4 threads) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, 4);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver22(){
+        // unsat3Large, split into cubes conquered on 4 threads:  Unsatisfiable
+    	String fileName = "2d-demo/unsat3Large.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 22 SAT solver starts: unsat3Large (Cube and Conquer, 4 threads) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solveCubes(formula, 4);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver23(){
+        // 16 Queens, with a ProbSAT local search before the search:  Satisfiable
+    	String fileName = "test_cases/16queens_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 23 SAT solver starts: 16 Queens (ProbSAT) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.localSearch = SATSolverOptions.LocalSearch.PROBSAT;
+    	options.localSearchFlips = 1000000;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		//Without a single conflict, the solution can only have been handed over from ProbSAT
+		SATSolver solver = new SATSolver(options);
+		solver.addFormula(formula);
+		assertSatisfies(formula, solver.solve());
+		assertEquals(0, solver.conflicts);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver24(){
+        // Pigeon Hole 6, writing a binary DRAT proof:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 24 SAT solver starts: Pigeon Hole 6 (DRAT proof) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.proofFileName = new File(System.getProperty("java.io.tmpdir"), "pigeon_hole_6_no.drat").getPath();
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+		assertTrue(new File(options.proofFileName).length()>0);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver25(){
+        // Test 1 No, checking the DRAT proof of the solver:  Unsatisfiable
+    	String fileName = "test_cases/test1_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 25 SAT solver starts: Test 1 No (DRAT check) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.proofFileName = new File(System.getProperty("java.io.tmpdir"), "test1_no.drat").getPath();
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+		try {
+			SDratChecker checker = SDratChecker.check(formula, options.proofFileName);
+			System.out.println(checker);
+			assertTrue(checker.verified);
+		} catch (IOException exception) {
+			fail(exception.toString());
+		}
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver26(){
+        // Unsat 1, extracting a minimal unsatisfiable core:  Unsatisfiable
+    	String fileName = "2d-demo/unsat1.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 26 SAT solver starts: Unsat 1 (minimal core) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+		long started = System.nanoTime();
+		Formula core = SATSolver.unsatisfiableCore(formula, true);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println("Core clauses: " + core.getSize());
+		
+		assertTrue(core.getSize()<formula.getSize());
+		assertUnsatisfiable(SATSolver.solve(core));
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver27(){
+        // Pigeon Hole 6, with a conflict budget that runs out first:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 27 SAT solver starts: Pigeon Hole 6 (budget) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.conflictLimit = 10;
+    	SATSolver solver = new SATSolver(options);
+    	solver.addFormula(formula);
+    	
+		long started = System.nanoTime();
+		Environment e = solver.solve();
+		assertNull(e);
+		assertEquals(SATSolver.Status.UNKNOWN, solver.status);
+		assertEquals(10, solver.conflicts);
+		
+		solver.conflictLimit = 0;
+		e = solver.solve();
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+		assertEquals(SATSolver.Status.UNSATISFIABLE, solver.status);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver28(){
+        // Hanoi 4, backtracking chronologically on every jump over more than one level:  Satisfiable
+    	String fileName = "test_cases/hanoi4_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 28 SAT solver starts: Hanoi 4 (chronological backtracking) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.savePhases = true;
+    	options.chronologicalBacktrackingThreshold = 1;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver29(){
+        // 100sub, memory-mapped and parsed on 4 threads straight into the SATSolver:  Satisfiable
+    	String fileName = "test_cases/100sub_yes.cnf";
+    	System.out.println("Test 29 SAT solver starts: 100sub (parsed on 4 threads) <Satisfiable>  File: " + fileName);
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.savePhases = true;
+    	
+		long started = System.nanoTime();
+		SATSolver solver = CNFParser.solverFromFile(fileName, false, options, 4);
+		assertNotEquals(null, solver);
+		Environment e = solver.solve();
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(CNFParser.formulaFromFile(fileName, false), e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver30(){
+        // Pigeon Hole 6, read straight from the file into a preprocessing SATSolver:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	System.out.println("Test 30 SAT solver starts: Pigeon Hole 6 (read without a Formula) <Unsatisfiable>  File: " + fileName);
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.preprocess = true;
+    	
+		long started = System.nanoTime();
+		Environment e = null;
+		try {
+			e = SATSolver.solve(fileName, false, options);
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver31(){
+        // Zebra, gzipped and decompressed as it is parsed:  Satisfiable
+    	String fileName = "test_cases/zebra_yes.cnf";
+    	String gzipFileName = new File(System.getProperty("java.io.tmpdir"), "zebra_yes.cnf.gz").getPath();
+    	System.out.println("Test 31 SAT solver starts: Zebra (gzipped) <Satisfiable>  File: " + gzipFileName);
+    	try {
+    		GZIPOutputStream output = new GZIPOutputStream(new FileOutputStream(gzipFileName));
+    		output.write(Files.readAllBytes(Paths.get(fileName)));
+    		output.close();
+    	} catch (IOException exception) {
+    		fail(exception.toString());
+    	}
+    	Formula formula = CNFParser.formulaFromFile(gzipFileName, false);
+    	System.out.println("Clauses: " + formula.getSize());
+    	assertEquals(CNFParser.formulaFromFile(fileName, false).getSize(), formula.getSize());
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(CNFParser.formulaFromFile(fileName, false), e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver32(){
+        // Hanoi 4, compiled to a cache directory, solved again from the compiled instance, then after it is 
+        // corrupted and after the CNF file is touched, from the text again:  Satisfiable
+    	String fileName = new File(System.getProperty("java.io.tmpdir"), "hanoi4_yes.cnf").getPath();
+    	String cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "scnf-cache").getPath();
+    	System.out.println("Test 32 SAT solver starts: Hanoi 4 (compiled instance) <Satisfiable>  File: " + fileName);
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.savePhases = true;
+    	options.instanceCacheDirectory = cacheDirectory;
+    	
+		long started = System.nanoTime();
+		Environment e = null;
+		try {
+			//A copy of the CNF file, so that it can be touched
+			Files.write(Paths.get(fileName), Files.readAllBytes(Paths.get("test_cases/hanoi4_yes.cnf")));
+			Formula formula = CNFParser.formulaFromFile(fileName, false);
+			
+			assertSatisfies(formula, SATSolver.solve(fileName, false, options));
+			String compiledFileName = SCompiledInstance.cacheFileName(fileName, false, cacheDirectory);
+			assertTrue(new File(compiledFileName).isFile());
+			assertTrue(SCompiledInstance.load(compiledFileName, fileName, false, new SATSolver(options)));
+			assertSatisfies(formula, SATSolver.solve(fileName, false, options));
+			
+			//A flipped byte fails the checksum, so the text is parsed and compiled again
+			RandomAccessFile compiled = new RandomAccessFile(compiledFileName, "rw");
+			compiled.seek(SCompiledInstance.HEADER_SIZE+10);
+			int b = compiled.read();
+			compiled.seek(SCompiledInstance.HEADER_SIZE+10);
+			compiled.write(b^4);
+			compiled.close();
+			assertFalse(SCompiledInstance.load(compiledFileName, fileName, false, new SATSolver(options)));
+			assertSatisfies(formula, SATSolver.solve(fileName, false, options));
+			assertTrue(SCompiledInstance.load(compiledFileName, fileName, false, new SATSolver(options)));
+			
+			//Once the CNF file is touched, its compiled instance is out of date, and is replaced by a new one
+			assertTrue(new File(fileName).setLastModified(new File(fileName).lastModified()-5000));
+			assertFalse(SCompiledInstance.load(compiledFileName, fileName, false, new SATSolver(options)));
+			e = SATSolver.solve(fileName, false, options);
+			String recompiledFileName = SCompiledInstance.cacheFileName(fileName, false, cacheDirectory);
+			assertNotEquals(compiledFileName, recompiledFileName);
+			assertFalse(new File(compiledFileName).exists());
+			assertTrue(SCompiledInstance.load(recompiledFileName, fileName, false, new SATSolver(options)));
+			assertSatisfies(formula, e);
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver33(){
+        // Pigeon Hole 6, preprocessed before clause learning:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 33 SAT solver starts: Pigeon Hole 6 (Preprocessing, CDCL) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.preprocess = true;
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver34(){
+        // Equivalences, with equivalent and failed literals found by preprocessing:  Satisfiable
+    	String fileName = "test_cases/equivalences_yes.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 34 SAT solver starts: Equivalences (Preprocessing, CDCL) <Satisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.preprocess = true;
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		//The same SPreprocessor on a SATSolver of its own, to see that it substituted and probed
+		SATSolver solver = new SATSolver(options);
+		solver.preprocessor = new SPreprocessor();
+		solver.addFormula(formula);
+		assertSatisfies(formula, solver.solve());
+		assertTrue(solver.preprocessor.substitutedVariables>0);
+		assertTrue(solver.preprocessor.failedLiterals>0);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfies(formula, e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver35(){
+        // A proof with a clause longer than the buffers of the SProofWriter, written across them
+    	String proofFileName = new File(System.getProperty("java.io.tmpdir"), "long_clause.drat").getPath();
+    	System.out.println("Test 35 SAT solver starts: Long clause (DRAT proof)  File: " + proofFileName);
+    	
+    	int length = SProofWriter.BUFFER_SIZE/2;
+    	int[] literalCodes = new int[length];
+    	for (int i=0; i!=length; ++i) {
+    		literalCodes[i] = SLiteral.code(i, i%2==0);
+    	}
+    	
+		long started = System.nanoTime();
+		byte[] bytes = null;
+		try {
+			SProofWriter proof = new SProofWriter(proofFileName, null);
+			proof.addClause(new int[] {0}, 0, 1);
+			proof.addClause(literalCodes, 0, length);
+			proof.deleteClause(literalCodes, 0, length);
+			proof.close();
+			bytes = Files.readAllBytes(Paths.get(proofFileName));
+		} catch (IOException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println("Proof bytes: " + bytes.length);
+		
+		//Each clause is its type, then one byte without the high bit set per SLiteral and one for the 0
+		assertEquals(SProofWriter.ADDITION, bytes[0]);
+		assertEquals(SProofWriter.ADDITION, bytes[3]);
+		int clauseEnd = 3;
+		int terminated = 0;
+		while (terminated!=length+1) {
+			if ((bytes[++clauseEnd]&0x80)==0) {
+				++terminated;
+			}
+		}
+		assertEquals(0, bytes[clauseEnd]);
+		assertEquals(SProofWriter.DELETION, bytes[clauseEnd+1]);
+		assertEquals(2*clauseEnd-1, bytes.length);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver36(){
+        // Pigeon Hole 6, solved and cored with a conflict budget, then on an interrupted thread:  Unknown
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 36 SAT solver starts: Pigeon Hole 6 (budget, interrupted) <Unknown>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = SUnsatisfiableCore.createOptions();
+    	options.conflictLimit = 5;
+    	
+		long started = System.nanoTime();
+		try {
+			SATSolver.solve(formula, options);
+			fail("Solved within 5 conflicts");
+		} catch (SATSolver.UnknownResultException exception) {
+			System.out.println(exception.getMessage());
+		}
+		try {
+			SATSolver.solve(fileName, false, options);
+			fail("Solved within 5 conflicts");
+		} catch (SATSolver.UnknownResultException exception) {
+			System.out.println(exception.getMessage());
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		}
+		try {
+			SUnsatisfiableCore.extract(formula, options, false);
+			fail("Found a core within 5 conflicts");
+		} catch (SATSolver.UnknownResultException exception) {
+			System.out.println(exception.getMessage());
+		}
+		
+		Thread.currentThread().interrupt();
+		try {
+			SATSolver.unsatisfiableCore(formula, false);
+			fail("Found a core on an interrupted thread");
+		} catch (SATSolver.UnknownResultException exception) {
+			System.out.println(exception.getMessage());
+		} finally {
+			assertTrue(Thread.interrupted());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver37(){
+        // Pigeon Hole 6, solved by a portfolio of 4 threads on an interrupted thread:  Unknown
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 37 SAT solver starts: Pigeon Hole 6 (Portfolio, interrupted) <Unknown>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+		long started = System.nanoTime();
+		Thread.currentThread().interrupt();
+		try {
+			SATSolver.solve(formula, 4);
+			fail("Answered on an interrupted thread");
+		} catch (SATSolver.UnknownResultException exception) {
+			System.out.println(exception.getMessage());
+		} finally {
+			assertTrue(Thread.interrupted());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver38(){
+        // Pigeon Hole 6, checking a proof of just the empty clause:  Not verified
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	String proofFileName = new File(System.getProperty("java.io.tmpdir"), "empty_clause.drat").getPath();
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 38 SAT solver starts: Pigeon Hole 6 (DRAT check of a wrong proof) <Not verified>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+		long started = System.nanoTime();
+		SDratChecker checker = null;
+		try {
+			Files.write(Paths.get(proofFileName), "0\n".getBytes("US-ASCII"));
+			checker = SDratChecker.check(formula, proofFileName);
+		} catch (IOException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(checker);
+		
+		//The empty clause does not follow from the clauses by unit propagation
+		assertFalse(checker.verified);
+		assertNotEquals(null, checker.failure);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver39(){
+        // CNF files with errors in their problem line or counts, then one with CRLF line ends and a tautology
+    	File directory = new File(System.getProperty("java.io.tmpdir"));
+    	System.out.println("Test 39 SAT solver starts: Malformed CNF files  Directory: " + directory);
+    	
+    	//The name of each file, its text and the start of the message of the CNFParseException it gives
+    	String[][] badFiles = {
+    			{"duplicate_problem_line.cnf", "p cnf 2 1\np cnf 2 1\n1 2 0\n", "More than one Problem Lines"},
+    			{"too_many_clauses.cnf", "p cnf 2 1\n1 0\n2 0\n", "The number of Clauses exceeded"},
+    			{"too_many_variables.cnf", "p cnf 1 1\n1 2 0\n", "The number of Literals exceeded"},
+    			{"short_problem_line.cnf", "p cnf 2\n1 2 0\n", "The Problem Line is not well formed"},
+    			{"long_problem_line.cnf", "p cnf 2 1 1\n1 2 0\n", "The Problem Line is not well formed"},
+    			{"dnf_problem_line.cnf", "p dnf 2 1\n1 2 0\n", "The Problem Line does not specify CNF"},
+    			{"negative_count.cnf", "p cnf -2 1\n1 2 0\n", "The number of Literals in the Problem Line"}
+    	};
+    	
+		long started = System.nanoTime();
+		try {
+			for (String[] badFile:badFiles) {
+				String fileName = new File(directory, badFile[0]).getPath();
+				Files.write(Paths.get(fileName), badFile[1].getBytes("US-ASCII"));
+				assertNull(CNFParser.formulaFromFile(fileName, false));
+				try {
+					SATSolver.solve(fileName, false, new SATSolverOptions());
+					fail(badFile[0] + " was parsed");
+				} catch (CNFParser.CNFParseException exception) {
+					assertTrue(badFile[0] + ": " + exception.getMessage(), exception.getMessage().startsWith(badFile[2]));
+				}
+			}
+			
+			//The tautology 1 -3 3 is dropped, leaving the clauses 1 -2 and 2 3
+			String fileName = new File(directory, "crlf_yes.cnf").getPath();
+			Files.write(Paths.get(fileName), "c CRLF\r\np cnf 3 3\r\n1 -2 0\r\n2 3 0\r\n1 -3 3 0\r\n".getBytes("US-ASCII"));
+			Formula formula = CNFParser.formulaFromFile(fileName, false);
+			assertEquals(2, formula.getSize());
+			assertSatisfies(formula, SATSolver.solve(formula));
+			assertSatisfiable(SATSolver.solve(fileName, false, new SATSolverOptions()));
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver40(){
+        // CNF files parsed on 1 to 16 threads, which must all give the same clauses in the same order
+    	String commentedFileName = new File(System.getProperty("java.io.tmpdir"), "commented_yes.cnf").getPath();
+    	String[] fileNames = {"test_cases/100sub_yes.cnf", "test_cases/hanoi4_yes.cnf", "test_cases/pigeon_hole_6_no.cnf", commentedFileName};
+    	System.out.println("Test 40 SAT solver starts: Parsing on 1 to 16 threads  Files: " + fileNames.length);
+    	
+    	//Comment lines ending in 0 and clauses split over lines, before and after the problem line, so that with 
+    	//many threads the chunks start close to them
+    	StringBuilder text = new StringBuilder();
+    	for (int i=0; i!=20; ++i) {
+    		text.append("c comment ").append(i).append(" 0\n");
+    	}
+    	text.append("p cnf 50 200\n");
+    	for (int i=0; i!=200; ++i) {
+    		text.append(i%50+1).append(i%2==0 ? " -" : " ").append((i*7)%50+1).append(i%3==0 ? "\n" : " ").append((i*13)%50+1).append(" 0\n");
+    		if (i%5==0) {
+    			text.append("c between clauses 0\n");
+    		}
+    	}
+    	
+		long started = System.nanoTime();
+		try {
+			Files.write(Paths.get(commentedFileName), text.toString().getBytes("US-ASCII"));
+			for (String fileName:fileNames) {
+				RecordingSATSolver serial = new RecordingSATSolver();
+				assertTrue(SDimacsLoader.load(fileName, false, serial, 1));
+				assertTrue(serial.literals.size()>0);
+				for (int numberOfThreads=2; numberOfThreads<=16; ++numberOfThreads) {
+					RecordingSATSolver parallel = new RecordingSATSolver();
+					assertTrue(SDimacsLoader.load(fileName, false, parallel, numberOfThreads));
+					assertArrayEquals(fileName + " on " + numberOfThreads + " threads", serial.literals.toArray(), parallel.literals.toArray());
+				}
+			}
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver41(){
+        // Zebra, compressed in formats plugged in through SCompressedInput.register, and in formats with no codec
+    	String fileName = "test_cases/zebra_yes.cnf";
+    	File directory = new File(System.getProperty("java.io.tmpdir"));
+    	System.out.println("Test 41 SAT solver starts: Zebra (plugged in codecs) <Satisfiable>  File: " + fileName);
+    	
+    	//Unplugged again at the end, so the codecs do not stay in the codec list of every later test
+    	SCompressionCodec reading = new XorCodec('R', -1);
+    	SCompressionCodec failing = new XorCodec('F', 1000);
+    	SCompressedInput.register(reading);
+    	SCompressedInput.register(failing);
+    	
+		long started = System.nanoTime();
+		Environment e = null;
+		try {
+			byte[] text = Files.readAllBytes(Paths.get(fileName));
+			String xorFileName = new File(directory, "zebra_yes.cnf.xr").getPath();
+			String failingFileName = new File(directory, "zebra_yes.cnf.xf").getPath();
+			Files.write(Paths.get(xorFileName), XorCodec.compress('R', text));
+			Files.write(Paths.get(failingFileName), XorCodec.compress('F', text));
+			
+			Formula formula = CNFParser.formulaFromFile(xorFileName, false);
+			assertEquals(CNFParser.formulaFromFile(fileName, false).getSize(), formula.getSize());
+			e = SATSolver.solve(xorFileName, false, new SATSolverOptions());
+			assertSatisfies(formula, e);
+			
+			//A RuntimeException of the codec is thrown by the reader as an IOException, rather than leaving it waiting
+			try {
+				SATSolver.solve(failingFileName, false, new SATSolverOptions());
+				fail("Read past the failure of the codec");
+			} catch (IOException exception) {
+				assertTrue(exception.getCause() instanceof IllegalStateException);
+			}
+			
+			//Formats that are recognised but have no codec are refused, rather than parsed as text
+			String[] formats = {"bzip2", "zstd"};
+			byte[][] magics = {{'B', 'Z', 'h', '9', '1', 'A'}, {0x28, (byte)0xb5, 0x2f, (byte)0xfd, 0x04, 0x00}};
+			for (int i=0; i!=formats.length; ++i) {
+				String compressedFileName = new File(directory, "zebra_yes.cnf." + formats[i]).getPath();
+				Files.write(Paths.get(compressedFileName), magics[i]);
+				assertNull(CNFParser.formulaFromFile(compressedFileName, false));
+				try {
+					SATSolver.solve(compressedFileName, false, new SATSolverOptions());
+					fail(formats[i] + " was parsed as text");
+				} catch (IOException exception) {
+					assertTrue(exception.getMessage(), exception.getMessage().contains(formats[i]));
+				}
+			}
+		} catch (IOException exception) {
+			fail(exception.toString());
+		} catch (CNFParser.CNFParseException exception) {
+			fail(exception.toString());
+		} finally {
+			SCompressedInput.unregister(reading);
+			SCompressedInput.unregister(failing);
+		}
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertSatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    @Test
+    public void testSATSolver42(){
+        // Pigeon Hole 6, backtracking chronologically on every jump over more than one level:  Unsatisfiable
+    	String fileName = "test_cases/pigeon_hole_6_no.cnf";
+    	Formula formula = CNFParser.formulaFromFile(fileName, false);
+    	System.out.println("Test 42 SAT solver starts: Pigeon Hole 6 (chronological backtracking) <Unsatisfiable>  File: " + fileName);
+    	System.out.println("Clauses: " + formula.getSize());
+    	
+    	SATSolverOptions options = new SATSolverOptions();
+    	options.learnClauses = true;
+    	options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+    	options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+    	options.savePhases = true;
+    	options.chronologicalBacktrackingThreshold = 1;
+    	
+		long started = System.nanoTime();
+		Environment e = SATSolver.solve(formula, options);
+		
+		long timeTaken = System.nanoTime()-started;
+		
+		System.out.println("Time:" + timeTaken/1000000.0 + "ms");
+		System.out.println(e);
+		
+		assertUnsatisfiable(e);
+         
+    	System.out.println("\n\n-----------------------------------------------------------\n\n");
+    }
+    
+    /**
+     * A SATSolver that records the DIMACS numbers of the clauses SDimacsLoader adds, instead of adding them
+     */
+    private static class RecordingSATSolver extends SATSolver {
+    	public SIntList literals = new SIntList();
+    	
+    	@Override
+    	public void addDimacsClauses(int[] literals, int length) {
+    		for (int i=0; i!=length; ++i) {
+    			this.literals.add(literals[i]);
+    		}
+    	}
+    }
+    
+    /**
+     * A codec of files starting with X and a letter of their own, followed by their bytes XORed with 1, whose 
+     * stream can be made to fail with an IllegalStateException part of the way through
+     */
+    private static class XorCodec implements SCompressionCodec {
+    	private final char letter;
+    	private final long failAfter; //The number of bytes after which the stream fails, -1 for never
+    	
+    	public XorCodec(char letter, long failAfter) {
+    		this.letter = letter;
+    		this.failAfter = failAfter;
+    	}
+    	
+    	public static byte[] compress(char letter, byte[] text) {
+    		byte[] compressed = new byte[text.length+2];
+    		compressed[0] = 'X';
+    		compressed[1] = (byte)letter;
+    		for (int i=0; i!=text.length; ++i) {
+    			compressed[i+2] = (byte)(text[i]^1);
+    		}
+    		return compressed;
+    	}
+    	
+    	public String getName() {
+    		return "X" + letter;
+    	}
+    	
+    	public boolean matches(byte[] magic, int length) {
+    		return length>=2 && magic[0]=='X' && magic[1]==letter;
+    	}
+    	
+    	public InputStream decompress(InputStream compressed) throws IOException {
+    		compressed.skip(2);
+    		return new FilterInputStream(compressed) {
+    			private long read = 0;
+    			
+    			@Override
+    			public int read() throws IOException {
+    				byte[] b = new byte[1];
+    				return read(b, 0, 1)<0 ? -1 : b[0]&0xff;
+    			}
+    			
+    			@Override
+    			public int read(byte[] b, int off, int len) throws IOException {
+    				if (failAfter>=0 && read>=failAfter) {
+    					throw new IllegalStateException("Corrupt block after " + read + " bytes");
+    				}
+    				int length = super.read(b, off, len);
+    				for (int i=0; i<length; ++i) {
+    					b[off+i] ^= 1;
+    				}
+    				read += Math.max(length, 0);
+    				return length;
+    			}
+    		};
+    	}
+    }
+    
 }
@@ -0,0 +1,186 @@
+package sat;
+
+/**
+ * This is a class to store every clause of a SATSolver contiguously in one int array.
+ * A clause is addressed by a clause reference, the index of its header word in memory. 
+ * The header word holds the number of SLiterals of the clause and its flags, and is followed by the code of each 
+ * SLiteral. A learned clause also has two words in front of its header, holding its LBD and its activity.
+ * Deleted clauses leave holes that are reclaimed by relocating every live clause into a new SClauseArena.
+ * 
+ * Some Terminology:
+ * literal code		- 2*index+1 for a negative SLiteral, 2*index for a positive one. See SLiteral.code
+ * clause reference	- The index of the header word of a clause in memory. NO_CLAUSE means no clause.
+ * 				  Binary clauses are not stored, so a reference below NO_CLAUSE stands for a binary clause, 
+ * 				  holding the code of one of its SLiterals. See binaryClause.
+ * 
+ * Layout of a clause of reference ref:
+ * memory[ref-2]		- The LBD of the clause, if it is learned
+ * memory[ref-1]		- The activity of the clause as the bits of a float, if it is learned
+ * memory[ref]			- The header: size<<SIZE_SHIFT | flags
+ * memory[ref+1...]		- The literal codes. The first two are watched by BCP
+ * 
+ * Class Dependencies:
+ * SATSolver, SLearnedClauseDatabase
+ */
+public class SClauseArena {
+	
+	public static final int NO_CLAUSE = -1;
+	public static final int LEARNED = 1; //Flag of a clause learned from a conflict
+	public static final int DELETED = 2; //Flag of a clause removed from the SLearnedClauseDatabase
+	public static final int USED = 4; //Flag of a learned clause that took part in a conflict since the last reduction
+	public static final int RELOCATED = 8; //Flag of a clause that was moved into another SClauseArena
+	public static final int SIZE_SHIFT = 4;
+	public static final int FLAGS_MASK = (1<<SIZE_SHIFT)-1;
+	public static final int LEARNED_EXTRA_WORDS = 2;
+	
+	public int[] memory;
+	public int size; //The number of words of memory in use
+	public int wasted; //The number of words of memory used by deleted clauses
+	
+	public SClauseArena(int capacity) {
+		this.memory = new int[Math.max(capacity, 16)];
+		this.size = 0;
+		this.wasted = 0;
+	}
+	
+	/**
+	 * Stores a clause
+	 * @param literalCodes The codes of the SLiterals of the clause
+	 * @param length The number of SLiterals in literalCodes to take
+	 * @param learned TRUE if the clause was learned from a conflict
+	 * @return The clause reference of the new clause
+	 */
+	public int allocate(int[] literalCodes, int length, boolean learned) {
+		int words = 1+length+(learned ? LEARNED_EXTRA_WORDS : 0);
+		if (size+words>memory.length) {
+			int[] newMemory = new int[Math.max(size+words, memory.length+(memory.length>>1))];
+			System.arraycopy(memory, 0, newMemory, 0, size);
+			memory = newMemory;
+		}
+		int ref = size;
+		if (learned) {
+			memory[ref++] = 0;
+			memory[ref++] = 0;
+		}
+		memory[ref] = (length<<SIZE_SHIFT) | (learned ? LEARNED : 0);
+		System.arraycopy(literalCodes, 0, memory, ref+1, length);
+		size += words;
+		return ref;
+	}
+	
+	/**
+	 * Returns a clause reference standing for a binary clause without storing it. 
+	 * Only one SLiteral fits, so the other must be known from where the reference is used, such as the SLiteral 
+	 * it is the reason of.
+	 * @param literal The code of the SLiteral to keep
+	 * @return
+	 */
+	public static int binaryClause(int literal) {
+		return NO_CLAUSE-1-literal;
+	}
+	
+	public static boolean isBinaryClause(int ref) {
+		return ref<NO_CLAUSE;
+	}
+	
+	/**
+	 * Returns the code of the SLiteral kept by a reference made by binaryClause
+	 * @param ref
+	 * @return
+	 */
+	public static int binaryClauseLiteral(int ref) {
+		return NO_CLAUSE-1-ref;
+	}
+	
+	public int clauseSize(int ref) {
+		return memory[ref]>>>SIZE_SHIFT;
+	}
+	
+	/**
+	 * Returns the code of the i-th SLiteral of a clause
+	 * @param ref
+	 * @param i
+	 * @return
+	 */
+	public int literal(int ref, int i) {
+		return memory[ref+1+i];
+	}
+	
+	public boolean isLearned(int ref) {
+		return (memory[ref]&LEARNED)!=0;
+	}
+	
+	public boolean isDeleted(int ref) {
+		return (memory[ref]&DELETED)!=0;
+	}
+	
+	public boolean isUsed(int ref) {
+		return (memory[ref]&USED)!=0;
+	}
+	
+	public void setUsed(int ref, boolean used) {
+		memory[ref] = used ? (memory[ref]|USED) : (memory[ref]&~USED);
+	}
+	
+	/**
+	 * Marks a clause as deleted. Its memory is reclaimed the next time the SClauseArena is compacted.
+	 * @param ref
+	 */
+	public void delete(int ref) {
+		memory[ref] |= DELETED;
+		wasted += 1+clauseSize(ref)+(isLearned(ref) ? LEARNED_EXTRA_WORDS : 0);
+	}
+	
+	public int lbd(int ref) {
+		return memory[ref-2];
+	}
+	
+	public void setLBD(int ref, int lbd) {
+		memory[ref-2] = lbd;
+	}
+	
+	public float activity(int ref) {
+		return Float.intBitsToFloat(memory[ref-1]);
+	}
+	
+	public void setActivity(int ref, float activity) {
+		memory[ref-1] = Float.floatToRawIntBits(activity);
+	}
+	
+	/**
+	 * Returns TRUE if enough of memory is wasted by deleted clauses for compaction to be worthwhile
+	 * @return
+	 */
+	public boolean isCompactionDue() {
+		return wasted>(size>>2);
+	}
+	
+	/**
+	 * Copies a clause into another SClauseArena, unless it was already copied.
+	 * The clause is marked as RELOCATED, and its new clause reference is left in place of its first SLiteral.
+	 * @param ref The clause reference in this SClauseArena
+	 * @param to The SClauseArena to copy the clause into
+	 * @return The clause reference in to
+	 */
+	public int relocate(int ref, SClauseArena to) {
+		int header = memory[ref];
+		if ((header&RELOCATED)!=0) { 
+			return memory[ref+1]; 
+		}
+		int length = header>>>SIZE_SHIFT;
+		boolean learned = (header&LEARNED)!=0;
+		int words = 1+length+(learned ? LEARNED_EXTRA_WORDS : 0);
+		if (to.size+words>to.memory.length) {
+			int[] newMemory = new int[Math.max(to.size+words, to.memory.length+(to.memory.length>>1))];
+			System.arraycopy(to.memory, 0, newMemory, 0, to.size);
+			to.memory = newMemory;
+		}
+		int from = learned ? ref-LEARNED_EXTRA_WORDS : ref;
+		int newRef = to.size+(ref-from);
+		System.arraycopy(memory, from, to.memory, to.size, words);
+		to.size += words;
+		memory[ref] = header|RELOCATED;
+		memory[ref+1] = newRef;
+		return newRef;
+	}
+}
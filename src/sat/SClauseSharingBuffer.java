@@ -0,0 +1,127 @@
+package sat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This is a ring of learned clauses shared between the SATSolvers of an SPortfolio, each running in its own thread.
+ * Publishing a clause claims the next position with a single atomic increment, and reading never writes anything
+ * shared, so no SATSolver ever waits for another. Each reader keeps its own position, and clauses it falls too far
+ * behind on are overwritten and simply missed.
+ *
+ * Only short clauses of low LBD are worth sending, as they are the ones most likely to prune the search of the
+ * other SATSolvers. The SATSolvers must number their variables alike, which they do when given the same Formula.
+ * The buffer also records which SATSolver answered first, after which the others stop searching.
+ *
+ * Some Terminology:
+ * entry		- The int array a clause is published as: its position, its producer, its LBD, then the codes of
+ * 				  its SLiterals. The position tells a reader whether the slot still holds the clause it wants.
+ * producer		- The number of the SATSolver that published a clause, which skips its own clauses when reading.
+ *
+ * Class Dependencies:
+ * SATSolver, SPortfolio, SIntList
+ */
+public class SClauseSharingBuffer {
+
+	public static final int DEFAULT_CAPACITY = 1<<14; //The number of clauses kept, a power of 2
+	public static final int MAX_SHARED_LBD = 3; //The highest LBD of a learned clause worth sharing
+	public static final int MAX_SHARED_SIZE = 30; //The largest learned clause worth sharing
+
+	private final AtomicReferenceArray<int[]> slots; //The entry published at each position, modulo the capacity
+	private final AtomicLong published; //The number of clauses published so far
+	private final int mask;
+	private final AtomicInteger winner; //The number of the SATSolver that answered first, -1 until one has
+
+	/**
+	 * Creates an empty buffer
+	 * @param capacity The number of clauses kept before the oldest are overwritten, a power of 2
+	 */
+	public SClauseSharingBuffer(int capacity) {
+		this.slots = new AtomicReferenceArray<int[]>(capacity);
+		this.published = new AtomicLong(0);
+		this.mask = capacity-1;
+		this.winner = new AtomicInteger(-1);
+	}
+
+	/**
+	 * Returns whether a learned clause is worth sharing
+	 * @param size
+	 * @param lbd
+	 * @return
+	 */
+	public static boolean isWorthSharing(int size, int lbd) {
+		return size<=MAX_SHARED_SIZE && lbd<=MAX_SHARED_LBD;
+	}
+
+	/**
+	 * Publishes a clause for the other SATSolvers to read
+	 * @param producer The number of the SATSolver publishing it
+	 * @param literalCodes The codes of the SLiterals of the clause
+	 * @param length The number of SLiterals in literalCodes to take
+	 * @param lbd The LBD of the clause
+	 */
+	public void publish(int producer, int[] literalCodes, int length, int lbd) {
+		long position = published.getAndIncrement();
+		int[] entry = new int[3+length];
+		entry[0] = (int)position;
+		entry[1] = producer;
+		entry[2] = lbd;
+		System.arraycopy(literalCodes, 0, entry, 3, length);
+		slots.set((int)position & mask, entry);
+	}
+
+	/**
+	 * Returns the number of clauses published so far, which is the position the next one will be published at
+	 * @return
+	 */
+	public long size() {
+		return published.get();
+	}
+
+	/**
+	 * Returns the position of the oldest clause still kept, for a reader that has fallen behind to skip to
+	 * @param end The number of clauses published, as returned by size()
+	 * @return
+	 */
+	public long oldestPosition(long end) {
+		return Math.max(0, end-mask-1);
+	}
+
+	/**
+	 * Called by a SATSolver once its search has an answer, to claim the answer for all
+	 * @param producer The number of the SATSolver
+	 * @return TRUE if no other SATSolver has answered before, otherwise FALSE and the answer should be discarded.
+	 */
+	public boolean finish(int producer) {
+		return winner.compareAndSet(-1, producer);
+	}
+
+	/**
+	 * Returns TRUE once a SATSolver has answered, so the others can stop searching
+	 * @return
+	 */
+	public boolean isFinished() {
+		return winner.get()>=0;
+	}
+
+	/**
+	 * Reads the clause published at a position, unless it was published by consumer itself, has been overwritten,
+	 * or is not written yet.
+	 * @param position
+	 * @param consumer The number of the SATSolver reading it
+	 * @param literalCodes Cleared, then filled with the codes of the SLiterals of the clause
+	 * @return The LBD of the clause, or 0 if there is no clause to read
+	 */
+	public int read(long position, int consumer, SIntList literalCodes) {
+		int[] entry = slots.get((int)position & mask);
+		if (entry==null || entry[0]!=(int)position || entry[1]==consumer) {
+			return 0;
+		}
+		literalCodes.clear();
+		for (int i=3; i!=entry.length; ++i) {
+			literalCodes.add(entry[i]);
+		}
+		return entry[2];
+	}
+}
@@ -0,0 +1,441 @@
+package sat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import sat.CNFParser.CNFParseException;
+
+/**
+ * This is a class to compile a CNF file in DIMACS format into a binary file that loads far faster than the text, for
+ * CNF files that are solved many times over.
+ *
+ * A compiled instance is a header, the clauses as a stream of varints, then a clause index. Each clause is its size
+ * followed by its literals, each of which is the difference from the literal before it, zigzag encoded. Literals are
+ * numbered 2*variable for positive literals and 2*variable+1 for negative ones, and neither the clauses nor their
+ * literals are reordered, so the SATSolver searches exactly as it would on the text. The index holds the offset in
+ * the stream of every INDEX_INTERVAL-th clause, so that the stream can be split at clause boundaries. A CRC32 of the
+ * stream, the index and the rest of the header is checked before any clause is added.
+ *
+ * Loading maps the file rather than reading it, a window at a time, each ending at a clause in the index, and adds the
+ * clauses to the SATSolver with SATSolver.addDimacsClauses. Only files whose variables are all DIMACS numbers can be
+ * compiled. The size and time of last modification of the CNF file are kept in the header, so that a compiled
+ * instance of a file that has since changed is not used.
+ *
+ * A cache directory makes reuse automatic: loadCached looks for the compiled instance of a CNF file there, under a
+ * name made from a hash of the path of the file and its time of last modification, and compiles it on a miss,
+ * removing those of earlier versions of the file.
+ *
+ * Some Terminology:
+ * varint		- An unsigned integer in 7 bits per byte, lowest first, with the top bit set on every byte but the last.
+ * zigzag		- The mapping of 0, -1, 1, -2, ... to 0, 1, 2, 3, ..., so that small differences make short varints.
+ * window		- The part of the file mapped at once, at most MAXIMUM_WINDOW_SIZE bytes.
+ *
+ * Class Dependencies:
+ * SATSolver, SDimacsReader, SCompressedInput, SIntList, CNFParser
+ */
+public class SCompiledInstance {
+
+	public static final int MAGIC = 0x53434e46; //"SCNF"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+	public static final int INDEX_INTERVAL = 1024; //The number of clauses between entries of the index
+	public static final int WRITE_BUFFER_SIZE = 1<<16;
+	public static final int MAXIMUM_WINDOW_SIZE = 1<<30;
+	public static final int CLAUSES_PER_BATCH = 1<<14; //The number of clauses decoded before they are added to the SATSolver
+	public static final String FILE_EXTENSION = ".scnf";
+
+	//The positions of the fields of the header
+	private static final int SOURCE_SIZE = 8;
+	private static final int SOURCE_MODIFIED = 16;
+	private static final int NUMBER_OF_VARIABLES = 24;
+	private static final int SWAPPED = 28;
+	private static final int NUMBER_OF_CLAUSES = 32;
+	private static final int NUMBER_OF_LITERALS = 40;
+	private static final int STREAM_LENGTH = 48;
+	private static final int CHECKSUM = 56;
+
+	private FileChannel channel; //Where the compiled instance is written
+	private ByteBuffer buffer; //The bytes waiting to be written to channel
+	private CRC32 checksum; //Of every byte written after the header, then of the header up to the checksum
+	private long position; //The offset in the stream of the next byte to write
+	private long[] index;
+	private long numberOfClauses;
+	private long numberOfLiterals;
+	private int numberOfVariables; //The highest DIMACS number written
+
+	/**
+	 * Compiles a CNF file, which may be compressed, see SCompressedInput
+	 * @param cnfFileName
+	 * @param swapLiteralsAndClausePositions See CNFParser.formulaFromFile
+	 * @param compiledFileName Where the compiled instance is written, which is replaced all at once
+	 * @return FALSE if a variable is not a DIMACS number, in which case nothing is written
+	 * @throws IOException
+	 * @throws CNFParseException If the CNF file has errors, in which case nothing is written
+	 */
+	public static boolean compile(String cnfFileName, boolean swapLiteralsAndClausePositions, String compiledFileName) throws IOException, CNFParseException {
+		Path source = Paths.get(cnfFileName);
+		long sourceSize = Files.size(source);
+		long sourceModified = Files.getLastModifiedTime(source).toMillis();
+		Path target = Paths.get(compiledFileName);
+		Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+		boolean compiled = false;
+		try {
+			ReadableByteChannel input = SCompressedInput.open(cnfFileName);
+			FileChannel output = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				SCompiledInstance instance = new SCompiledInstance(output);
+				SDimacsReader reader = new SDimacsReader(input, swapLiteralsAndClausePositions);
+				if (!instance.writeClauses(reader)) {
+					return false;
+				}
+				reader.checkCounts();
+				instance.finish(sourceSize, sourceModified, swapLiteralsAndClausePositions);
+			} finally {
+				input.close();
+				output.close();
+			}
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			compiled = true;
+			return true;
+		} finally {
+			if (!compiled) {
+				Files.deleteIfExists(temporary);
+			}
+		}
+	}
+
+	/**
+	 * Adds the clauses of a compiled instance to a SATSolver, if it is sound and up to date
+	 * @param compiledFileName
+	 * @param cnfFileName The CNF file it was compiled from, checked against the size and time of last modification
+	 * the compiled instance was made from, or null not to check
+	 * @param swapLiteralsAndClausePositions Checked against what the CNF file was compiled with
+	 * @param solver
+	 * @return FALSE if the compiled instance is not of the CNF file as it is now, is of another version or does not
+	 * match its checksum, in which case no clause has been added
+	 * @throws IOException
+	 */
+	public static boolean load(String compiledFileName, String cnfFileName, boolean swapLiteralsAndClausePositions, SATSolver solver) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(compiledFileName));
+		try {
+			long size = channel.size();
+			if (size<HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0)!=MAGIC || header.getInt(4)!=VERSION || (header.getInt(SWAPPED)!=0)!=swapLiteralsAndClausePositions) {
+				return false;
+			}
+			if (cnfFileName!=null) {
+				Path source = Paths.get(cnfFileName);
+				if (header.getLong(SOURCE_SIZE)!=Files.size(source) || header.getLong(SOURCE_MODIFIED)!=Files.getLastModifiedTime(source).toMillis()) {
+					return false;
+				}
+			}
+			long numberOfClauses = header.getLong(NUMBER_OF_CLAUSES);
+			long streamLength = header.getLong(STREAM_LENGTH);
+			long indexLength = 8*((numberOfClauses+INDEX_INTERVAL-1)/INDEX_INTERVAL);
+			if (numberOfClauses<0 || streamLength<0 || HEADER_SIZE+streamLength+indexLength!=size) {
+				return false;
+			}
+
+			//Check the whole file before adding anything
+			CRC32 checksum = new CRC32();
+			for (long at=HEADER_SIZE; at!=size; ) {
+				long length = Math.min(MAXIMUM_WINDOW_SIZE, size-at);
+				checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, at, length));
+				at += length;
+			}
+			ByteBuffer fields = header.duplicate();
+			fields.position(0).limit(CHECKSUM);
+			checksum.update(fields);
+			if (checksum.getValue()!=header.getLong(CHECKSUM)) {
+				return false;
+			}
+
+			long[] index = new long[(int)(indexLength/8)];
+			ByteBuffer indexBytes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE+streamLength, indexLength);
+			for (int i=0; i!=index.length; ++i) {
+				index[i] = indexBytes.getLong(8*i);
+			}
+			addClauses(channel, streamLength, numberOfClauses, index, solver);
+			return true;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Adds the clauses of a CNF file to a SATSolver from its compiled instance in a cache directory, compiling it
+	 * first if it is not there or is out of date
+	 * @param cnfFileName
+	 * @param swapLiteralsAndClausePositions See CNFParser.formulaFromFile
+	 * @param cacheDirectory Which is created if it does not exist
+	 * @param solver
+	 * @return FALSE if the CNF file cannot be compiled, as a variable is not a DIMACS number, in which case no clause
+	 * has been added
+	 * @throws IOException
+	 * @throws CNFParseException If the CNF file has errors
+	 */
+	public static boolean loadCached(String cnfFileName, boolean swapLiteralsAndClausePositions, String cacheDirectory, SATSolver solver) throws IOException, CNFParseException {
+		String compiledFileName = cacheFileName(cnfFileName, swapLiteralsAndClausePositions, cacheDirectory);
+		if (new File(compiledFileName).isFile() && load(compiledFileName, cnfFileName, swapLiteralsAndClausePositions, solver)) {
+			return true;
+		}
+		Files.createDirectories(Paths.get(cacheDirectory));
+		if (!compile(cnfFileName, swapLiteralsAndClausePositions, compiledFileName)) {
+			return false;
+		}
+		
+		//Remove the compiled instances of earlier versions of the file
+		String name = new File(compiledFileName).getName();
+		DirectoryStream<Path> stale = Files.newDirectoryStream(Paths.get(cacheDirectory), name.substring(0, name.indexOf('-')+1) + "*" + FILE_EXTENSION);
+		try {
+			for (Path path:stale) {
+				if (!path.getFileName().toString().equals(name)) {
+					Files.deleteIfExists(path);
+				}
+			}
+		} finally {
+			stale.close();
+		}
+		if (!load(compiledFileName, cnfFileName, swapLiteralsAndClausePositions, solver)) {
+			throw new IOException("The compiled instance " + compiledFileName + " of " + cnfFileName + " cannot be loaded");
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the name a CNF file is compiled to in a cache directory, which is a hash of the absolute path of the file
+	 * and of swapLiteralsAndClausePositions, followed by the time of last modification of the file
+	 * @param cnfFileName
+	 * @param swapLiteralsAndClausePositions
+	 * @param cacheDirectory
+	 * @return
+	 * @throws IOException
+	 */
+	public static String cacheFileName(String cnfFileName, boolean swapLiteralsAndClausePositions, String cacheDirectory) throws IOException {
+		Path source = Paths.get(cnfFileName).toAbsolutePath().normalize();
+		byte[] hash;
+		try {
+			String key = source.toString() + (swapLiteralsAndClausePositions ? "\0swapped" : "");
+			hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e); //Every JVM has SHA-1
+		}
+		StringBuilder name = new StringBuilder();
+		for (int i=0; i!=hash.length; ++i) {
+			name.append(String.format("%02x", hash[i]&0xff));
+		}
+		name.append('-').append(Files.getLastModifiedTime(source).toMillis());
+		return new File(cacheDirectory, name + FILE_EXTENSION).getPath();
+	}
+
+	/**
+	 * Creates a writer of a compiled instance, which leaves room for the header
+	 * @param channel
+	 * @throws IOException
+	 */
+	private SCompiledInstance(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+		this.checksum = new CRC32();
+		this.position = 0;
+		this.index = new long[16];
+		this.numberOfClauses = 0;
+		this.numberOfLiterals = 0;
+		this.numberOfVariables = 0;
+		channel.position(HEADER_SIZE);
+	}
+
+	/**
+	 * Writes every clause read by a SDimacsReader to the stream
+	 * @param reader
+	 * @return FALSE if a variable is not a DIMACS number
+	 * @throws IOException
+	 * @throws CNFParseException
+	 */
+	private boolean writeClauses(SDimacsReader reader) throws IOException, CNFParseException {
+		SIntList clause = new SIntList();
+		int token;
+		while ((token = reader.next())!=SDimacsReader.END_OF_FILE) {
+			if (token==SDimacsReader.END_OF_CLAUSE) {
+				writeClause(clause);
+				clause.clear();
+			} else if (reader.number==0) {
+				return false;
+			} else {
+				clause.add(2*reader.number + (reader.negative ? 1 : 0));
+				numberOfVariables = Math.max(numberOfVariables, reader.number);
+			}
+		}
+		if (!clause.isEmpty()) { //In case the last line is not terminated by 0
+			writeClause(clause);
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a clause to the stream
+	 * @param clause The numbers of its literals, 2*variable for positive literals and 2*variable+1 for negative ones
+	 * @throws IOException
+	 */
+	private void writeClause(SIntList clause) throws IOException {
+		if (numberOfClauses%INDEX_INTERVAL==0) {
+			int entry = (int)(numberOfClauses/INDEX_INTERVAL);
+			if (entry==index.length) {
+				index = Arrays.copyOf(index, 2*index.length);
+			}
+			index[entry] = position;
+		}
+		++numberOfClauses;
+		numberOfLiterals += clause.size();
+		writeVarint(clause.size());
+		long previous = 0;
+		for (int i=0; i!=clause.size(); ++i) {
+			long difference = clause.get(i)-previous;
+			writeVarint((difference<<1) ^ (difference>>63));
+			previous = clause.get(i);
+		}
+	}
+
+	/**
+	 * Writes the index and the header, once every clause has been written
+	 * @param sourceSize
+	 * @param sourceModified
+	 * @param swapLiteralsAndClausePositions
+	 * @throws IOException
+	 */
+	private void finish(long sourceSize, long sourceModified, boolean swapLiteralsAndClausePositions) throws IOException {
+		long streamLength = position;
+		for (int i=0; i!=(numberOfClauses+INDEX_INTERVAL-1)/INDEX_INTERVAL; ++i) {
+			if (buffer.remaining()<8) {
+				flush();
+			}
+			buffer.putLong(index[i]);
+		}
+		flush();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putLong(SOURCE_SIZE, sourceSize);
+		header.putLong(SOURCE_MODIFIED, sourceModified);
+		header.putInt(NUMBER_OF_VARIABLES, numberOfVariables);
+		header.putInt(SWAPPED, swapLiteralsAndClausePositions ? 1 : 0);
+		header.putLong(NUMBER_OF_CLAUSES, numberOfClauses);
+		header.putLong(NUMBER_OF_LITERALS, numberOfLiterals);
+		header.putLong(STREAM_LENGTH, streamLength);
+		checksum.update(header.array(), 0, CHECKSUM);
+		header.putLong(CHECKSUM, checksum.getValue());
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		channel.force(false);
+	}
+
+	private void writeVarint(long value) throws IOException {
+		if (buffer.remaining()<10) {
+			flush();
+		}
+		while ((value & ~0x7fL)!=0) {
+			buffer.put((byte)((value & 0x7f) | 0x80));
+			value >>>= 7;
+			++position;
+		}
+		buffer.put((byte)value);
+		++position;
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		checksum.update(buffer.array(), 0, buffer.limit());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Decodes the stream of a compiled instance and adds its clauses to a SATSolver, a window at a time
+	 * @param channel
+	 * @param streamLength
+	 * @param numberOfClauses
+	 * @param index
+	 * @param solver
+	 * @throws IOException If the stream does not hold as many clauses as the header states
+	 */
+	private static void addClauses(FileChannel channel, long streamLength, long numberOfClauses, long[] index, SATSolver solver) throws IOException {
+		SIntList literals = new SIntList();
+		long clausesLeft = numberOfClauses;
+		long windowStart = 0;
+		int entry = 0; //The entry of the index of the first clause of the window
+		while (clausesLeft!=0) {
+			//The window holds the clauses of the entries from entry to end-1, up to the end of the stream if end is index.length
+			int end = entry+1;
+			while (end<index.length && (end+1<index.length ? index[end+1] : streamLength)-windowStart<=MAXIMUM_WINDOW_SIZE) {
+				++end;
+			}
+			long windowEnd = end<index.length ? index[end] : streamLength;
+			if (windowEnd-windowStart>MAXIMUM_WINDOW_SIZE) {
+				throw new IOException("The clauses between two entries of the index do not fit a window");
+			}
+			long clausesInWindow = Math.min(clausesLeft, (long)(end-entry)*INDEX_INTERVAL);
+			ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE+windowStart, windowEnd-windowStart);
+
+			for (long c=0; c!=clausesInWindow; ++c) {
+				int size = (int)readVarint(window);
+				long previous = 0;
+				for (int i=0; i!=size; ++i) {
+					long difference = readVarint(window);
+					long literal = previous + ((difference>>>1) ^ -(difference&1));
+					int variable = (int)(literal>>1);
+					literals.add((literal&1)==0 ? variable : -variable);
+					previous = literal;
+				}
+				literals.add(0);
+				if (c%CLAUSES_PER_BATCH==CLAUSES_PER_BATCH-1) {
+					solver.addDimacsClauses(literals.data, literals.size());
+					literals.clear();
+				}
+			}
+			solver.addDimacsClauses(literals.data, literals.size());
+			literals.clear();
+			if (window.hasRemaining()) {
+				throw new IOException("The clauses of the compiled instance do not match its index");
+			}
+			clausesLeft -= clausesInWindow;
+			windowStart = windowEnd;
+			entry = end;
+		}
+	}
+
+	private static long readVarint(ByteBuffer window) throws IOException {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (!window.hasRemaining() || shift>63) {
+				throw new IOException("A varint of the compiled instance is cut short");
+			}
+			b = window.get();
+			value |= (long)(b & 0x7f)<<shift;
+			shift += 7;
+		} while ((b & 0x80)!=0);
+		return value;
+	}
+}
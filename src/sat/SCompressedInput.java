@@ -0,0 +1,254 @@
+package sat;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This is a class to open CNF files that may be compressed, without decompressing them to disk first.
+ *
+ * The format of a file is told by its first bytes, so no file extension is needed. A plain file is opened as it is,
+ * as a FileChannel. A compressed file is decompressed by the SCompressionCodec of its format on a thread of its own,
+ * which keeps up to BLOCKS_AHEAD blocks of decompressed bytes ready, so that decompressing overlaps with whatever reads
+ * the channel returned, such as a SDimacsReader tokenising it. Anything thrown while decompressing, even a
+ * RuntimeException or Error of a plugged in codec, is thrown as an IOException by the next read of the channel, once
+ * the blocks before it have been read.
+ *
+ * Gzip is decompressed with the JDK. A file in another format that is recognised but has no SCompressionCodec, such
+ * as bzip2 or zstd, is refused with an IOException naming the format, rather than parsed as text.
+ *
+ * Some Terminology:
+ * block		- A run of up to BLOCK_SIZE decompressed bytes, handed from the decompressing thread to the reader.
+ *
+ * Class Dependencies:
+ * SCompressionCodec, CNFParser, SATSolver
+ */
+public class SCompressedInput {
+
+	public static final int MAGIC_LENGTH = 6; //The number of bytes at the start of a file that codecs are given to match
+	public static final int BLOCK_SIZE = 1<<16;
+	public static final int BLOCKS_AHEAD = 16; //The number of blocks the decompressing thread may get ahead of the reader
+
+	public static final SCompressionCodec GZIP = new SCompressionCodec() {
+		public String getName() {
+			return "gzip";
+		}
+		public boolean matches(byte[] magic, int length) {
+			return length>=2 && (magic[0]&0xff)==0x1f && (magic[1]&0xff)==0x8b;
+		}
+		public InputStream decompress(InputStream compressed) throws IOException {
+			return new GZIPInputStream(compressed, BLOCK_SIZE);
+		}
+	};
+
+	//Formats that are recognised, and their magic, for those that no codec has been plugged in for
+	private static final String[] KNOWN_FORMATS = {"bzip2", "zstd", "xz", "lz4"};
+	private static final int[][] KNOWN_MAGIC = {{'B', 'Z', 'h'}, {0x28, 0xb5, 0x2f, 0xfd}, {0xfd, '7', 'z', 'X', 'Z', 0x00}, {0x04, 0x22, 0x4d, 0x18}};
+
+	private static final List<SCompressionCodec> codecs = new CopyOnWriteArrayList<SCompressionCodec>(); //In the order they are tried
+
+	static {
+		codecs.add(GZIP);
+		for (SCompressionCodec codec:ServiceLoader.load(SCompressionCodec.class)) {
+			codecs.add(codec);
+		}
+	}
+
+	/**
+	 * Only static methods, so there are no instances of this class
+	 */
+	private SCompressedInput() {
+	}
+
+	/**
+	 * Plugs in a codec, which is tried before those already plugged in
+	 * @param codec
+	 */
+	public static void register(SCompressionCodec codec) {
+		codecs.add(0, codec);
+	}
+
+	/**
+	 * Unplugs a codec that was plugged in by register
+	 * @param codec
+	 * @return Whether the codec was plugged in
+	 */
+	public static boolean unregister(SCompressionCodec codec) {
+		return codecs.remove(codec);
+	}
+
+	/**
+	 * Returns the codec of the format of a file
+	 * @param fileName
+	 * @return The first codec matching the first bytes of the file, or null if it is not compressed
+	 * @throws IOException If the file is in a recognised format that no codec has been plugged in for
+	 */
+	public static SCompressionCodec codecOf(String fileName) throws IOException {
+		byte[] magic = new byte[MAGIC_LENGTH];
+		int length = 0;
+		FileChannel channel = FileChannel.open(Paths.get(fileName));
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(magic);
+			while (buffer.hasRemaining() && channel.read(buffer)>=0) {
+				length = buffer.position();
+			}
+		} finally {
+			channel.close();
+		}
+
+		for (SCompressionCodec codec:codecs) {
+			if (codec.matches(magic, length)) {
+				return codec;
+			}
+		}
+		for (int i=0; i!=KNOWN_FORMATS.length; ++i) {
+			boolean matches = length>=KNOWN_MAGIC[i].length;
+			for (int k=0; matches && k!=KNOWN_MAGIC[i].length; ++k) {
+				matches = (magic[k]&0xff)==KNOWN_MAGIC[i][k];
+			}
+			if (matches) {
+				throw new IOException(fileName + " is compressed with " + KNOWN_FORMATS[i] + ", for which no SCompressionCodec is registered");
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Opens a file for reading, decompressed if it is compressed
+	 * @param fileName
+	 * @return A FileChannel if the file is not compressed, otherwise a channel of its decompressed bytes, which
+	 * are decompressed on a thread of their own until the channel is closed
+	 * @throws IOException See codecOf
+	 */
+	public static ReadableByteChannel open(String fileName) throws IOException {
+		SCompressionCodec codec = codecOf(fileName);
+		FileChannel channel = FileChannel.open(Paths.get(fileName));
+		if (codec==null) {
+			return channel;
+		}
+		try {
+			return new Pipeline(codec.decompress(new BufferedInputStream(Channels.newInputStream(channel), BLOCK_SIZE)), fileName);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * A channel of the bytes of a stream, which a thread of its own reads ahead of it
+	 */
+	private static class Pipeline implements ReadableByteChannel, Runnable {
+		private static final ByteBuffer END = ByteBuffer.allocate(0); //Queued after the last block
+
+		private InputStream decompressed;
+		private BlockingQueue<ByteBuffer> blocks; //The blocks read ahead, in order, ending with END
+		private ByteBuffer block; //The block being read, null before the first
+		private volatile Throwable failure; //What stopped the thread, null if nothing did
+		private Thread thread;
+		private boolean open;
+
+		public Pipeline(InputStream decompressed, String fileName) {
+			this.decompressed = decompressed;
+			this.blocks = new ArrayBlockingQueue<ByteBuffer>(BLOCKS_AHEAD);
+			this.block = null;
+			this.failure = null;
+			this.thread = new Thread(this, "SCompressedInput " + fileName);
+			this.open = true;
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Reads the stream into blocks until it ends, fails or the channel is closed, then closes the stream.
+		 * Unless the channel has been closed, END is queued however the thread stops, so that the reader never waits
+		 * for it in vain.
+		 */
+		public void run() {
+			boolean closed = false;
+			try {
+				int length = BLOCK_SIZE;
+				while (length==BLOCK_SIZE) {
+					byte[] bytes = new byte[BLOCK_SIZE];
+					length = 0;
+					int read = 0;
+					while (length!=BLOCK_SIZE && (read = decompressed.read(bytes, length, BLOCK_SIZE-length))>=0) {
+						length += read;
+					}
+					if (length!=0) {
+						blocks.put(ByteBuffer.wrap(bytes, 0, length));
+					}
+				}
+			} catch (InterruptedException e) {
+				closed = true; //The channel has been closed, so no one is waiting for the blocks
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				try {
+					decompressed.close();
+				} catch (Throwable e) {
+					//Nothing more is read from it
+				}
+				if (!closed) {
+					try {
+						blocks.put(END);
+					} catch (InterruptedException e) {
+						//The channel has been closed since
+					}
+				}
+			}
+		}
+
+		public int read(ByteBuffer destination) throws IOException {
+			if (!open) {
+				throw new ClosedChannelException();
+			}
+			if (block!=END && (block==null || !block.hasRemaining())) {
+				try {
+					block = blocks.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for decompressed bytes");
+				}
+			}
+			if (block==END) {
+				if (failure!=null) {
+					throw new IOException("Decompressing failed: " + failure, failure);
+				}
+				return -1;
+			}
+			int length = Math.min(block.remaining(), destination.remaining());
+			int limit = block.limit();
+			block.limit(block.position()+length);
+			destination.put(block);
+			block.limit(limit);
+			return length;
+		}
+
+		public boolean isOpen() {
+			return open;
+		}
+
+		/**
+		 * Stops the thread, which closes the stream
+		 */
+		public void close() throws IOException {
+			if (open) {
+				open = false;
+				thread.interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package sat;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This is an interface for a compression format CNF files may be stored in, which SCompressedInput picks by the
+ * first bytes of the file. Gzip comes with SCompressedInput. Other formats are plugged in by SCompressedInput.register,
+ * or by naming the class implementing this interface in a META-INF/services/sat.SCompressionCodec file on the class
+ * path, for java.util.ServiceLoader to find.
+ *
+ * Some Terminology:
+ * magic		- The bytes a compressed file starts with, which tell its format apart from plain text.
+ *
+ * Class Dependencies:
+ * SCompressedInput
+ */
+public interface SCompressionCodec {
+
+	/**
+	 * @return The name of the format, such as "gzip"
+	 */
+	public String getName();
+
+	/**
+	 * Called by SCompressedInput with the first bytes of a file.
+	 * @param magic The first bytes of the file
+	 * @param length The number of bytes in magic, fewer than SCompressedInput.MAGIC_LENGTH only if the file is shorter
+	 * @return TRUE if the file is in this format, otherwise FALSE
+	 */
+	public boolean matches(byte[] magic, int length);
+
+	/**
+	 * Called by SCompressedInput to read a file in this format. The stream returned is read on a thread of its own.
+	 * @param compressed The bytes of the file, from its start
+	 * @return The decompressed bytes, whose close closes compressed
+	 * @throws IOException
+	 */
+	public InputStream decompress(InputStream compressed) throws IOException;
+}
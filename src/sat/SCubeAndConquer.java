@@ -0,0 +1,138 @@
+package sat;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sat.env.Environment;
+import sat.formula.Formula;
+import sat.formula.Literal;
+
+/**
+ * This is a class that solves a Formula by splitting it into cubes and solving them in parallel on a ForkJoinPool.
+ * Each cube is a task that either splits into two, on the variable picked by lookahead, or is conquered by a CDCL
+ * SATSolver assuming it. Idle threads steal the cubes left by the others, so the work spreads evenly even though
+ * some cubes are much harder than others. The Formula has a solution if and only if one of the cubes has, so the
+ * first solution found ends the search, and the Formula has none once every cube is refuted.
+ *
+ * Every thread keeps one SATSolver for all the cubes it conquers, so what it learns on one cube helps on the next.
+ *
+ * Some Terminology:
+ * cube			- A set of Literals assumed TRUE. The cubes of a split cover every assignment of the Formula.
+ * lookahead	- Scoring a variable by how many SLiterals are implied by assigning it each way, see
+ * 				  SATSolver.selectCubeLiteral. Splitting on the best one makes both halves easier.
+ *
+ * Class Dependencies:
+ * SATSolver, SATSolverOptions
+ */
+public class SCubeAndConquer {
+
+	public static final int LOOKAHEAD_CANDIDATES = 20; //The number of variables looked ahead on per split
+	public static final int EXTRA_CUBE_DEPTH = 4; //How much deeper than the number of threads needs the cubes are split
+
+	private final Formula formula;
+	private final int maximumDepth; //The number of Literals of a cube beyond which it is not split any further
+	private final ThreadLocal<SATSolver> solvers; //The SATSolver of each thread of the ForkJoinPool
+	private final Queue<SATSolver> allSolvers; //Every SATSolver created, to cancel them once a solution is found
+	private final AtomicReference<Environment> solution; //The first solution found
+
+	/**
+	 * Solves a Formula with cube and conquer on numberOfThreads threads.
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param numberOfThreads The number of threads, at least 1
+	 * @return An Environment containing a possible solution to Formula, or null if there is none.
+	 */
+	public static Environment solve(Formula formula, int numberOfThreads) {
+		numberOfThreads = Math.max(numberOfThreads, 1);
+		SCubeAndConquer cubeAndConquer = new SCubeAndConquer(formula, numberOfThreads);
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+		try {
+			pool.invoke(cubeAndConquer.new CubeTask(new Literal[0]));
+		} finally {
+			pool.shutdown();
+		}
+		return cubeAndConquer.solution.get();
+	}
+
+	/**
+	 * Creates the shared state of the tasks solving a Formula
+	 * @param formula
+	 * @param numberOfThreads
+	 */
+	private SCubeAndConquer(final Formula formula, int numberOfThreads) {
+		this.formula = formula;
+		this.maximumDepth = 32-Integer.numberOfLeadingZeros(numberOfThreads-1)+EXTRA_CUBE_DEPTH;
+		this.allSolvers = new ConcurrentLinkedQueue<SATSolver>();
+		this.solution = new AtomicReference<Environment>();
+		this.solvers = new ThreadLocal<SATSolver>() {
+			@Override
+			protected SATSolver initialValue() {
+				SATSolver solver = new SATSolver(createOptions());
+				solver.addFormula(formula);
+				allSolvers.add(solver);
+				return solver;
+			}
+		};
+	}
+
+	/**
+	 * Returns the SATSolverOptions the cubes are conquered with
+	 * @return
+	 */
+	public static SATSolverOptions createOptions() {
+		SATSolverOptions options = new SATSolverOptions();
+		options.learnClauses = true;
+		options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+		options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+		options.savePhases = true;
+		return options;
+	}
+
+	/**
+	 * Records a solution, unless another was found first, and cancels every SATSolver still searching
+	 * @param environment
+	 */
+	private void solutionFound(Environment environment) {
+		if (solution.compareAndSet(null, environment)) {
+			for (SATSolver solver:allSolvers) {
+				solver.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * A task that splits a cube in two, or conquers it when it is deep enough
+	 */
+	private class CubeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final Literal[] cube;
+
+		public CubeTask(Literal[] cube) {
+			this.cube = cube;
+		}
+
+		@Override
+		protected void compute() {
+			if (solution.get()!=null) { return; }
+			SATSolver solver = solvers.get();
+			Literal split = cube.length<maximumDepth ? solver.selectCubeLiteral(cube, LOOKAHEAD_CANDIDATES) : null;
+			if (split==null) {
+				Environment environment = solver.solve(cube);
+				if (environment!=null && !solver.isCancelled()) {
+					solutionFound(environment);
+				}
+				return;
+			}
+			Literal[] positiveCube = new Literal[cube.length+1];
+			Literal[] negativeCube = new Literal[cube.length+1];
+			System.arraycopy(cube, 0, positiveCube, 0, cube.length);
+			System.arraycopy(cube, 0, negativeCube, 0, cube.length);
+			positiveCube[cube.length] = split;
+			negativeCube[cube.length] = split.getNegation();
+			invokeAll(new CubeTask(positiveCube), new CubeTask(negativeCube));
+		}
+	}
+}
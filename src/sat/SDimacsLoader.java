@@ -0,0 +1,240 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sat.CNFParser.CNFParseException;
+
+/**
+ * This is a class to load a CNF file in DIMACS format straight into a SATSolver, parsing it on several threads.
+ *
+ * The file is memory-mapped rather than read, a chunk at a time, so that its text never has to fit on the heap.
+ * It is split into chunks that each start right after a line ending a clause, which are parsed in parallel by
+ * SDimacsReaders into int buffers of their own. The buffers are added to the SATSolver in the order of the file,
+ * each as soon as it and those before it are done, and a chunk is only mapped and parsed once few enough buffers
+ * are waiting, so that the heap holds no more than a few chunks' worth of literals however large the file.
+ * The problem line is checked against the whole file once every chunk has been added.
+ *
+ * Some Terminology:
+ * chunk			- A part of the file parsed on its own, starting at the start of a line and after the end of a clause.
+ * clause line	- A line that is neither a comment line nor the problem line. One whose last token is 0 ends a clause.
+ *
+ * Class Dependencies:
+ * SATSolver, SDimacsReader, SIntList, CNFParser
+ */
+public class SDimacsLoader {
+
+	public static final int CHUNK_SIZE = 1<<26; //The size the file is split into chunks of, unless it takes fewer to give every thread one
+	public static final int SCAN_BUFFER_SIZE = 1<<12; //The size of the reads looking for the boundaries of chunks
+
+	/**
+	 * Only static methods, so there are no instances of this class
+	 */
+	private SDimacsLoader() {
+	}
+
+	/**
+	 * Adds the clauses of a CNF file to a SATSolver, parsed on numberOfThreads threads
+	 * @param fileName
+	 * @param swapLiteralsAndClausePositions See CNFParser.formulaFromFile
+	 * @param solver Where the clauses are added, with SATSolver.addDimacsClauses
+	 * @param numberOfThreads The number of threads, at least 1
+	 * @return FALSE if a variable is not a DIMACS number, in which case only some of the clauses may have been added
+	 * @throws IOException
+	 * @throws CNFParseException If the problem line is not well formed, or there are more clauses or variables than it
+	 * states, in which case the clauses may have been added all the same
+	 */
+	public static boolean load(String fileName, final boolean swapLiteralsAndClausePositions, SATSolver solver, int numberOfThreads) throws IOException, CNFParseException {
+		numberOfThreads = Math.max(numberOfThreads, 1);
+		FileChannel channel = FileChannel.open(Paths.get(fileName));
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			long size = channel.size();
+			int numberOfChunks = (int)Math.max(numberOfThreads, (size+CHUNK_SIZE-1)/CHUNK_SIZE);
+			long[] boundaries = new long[numberOfChunks+1];
+			boundaries[numberOfChunks] = size;
+			for (int i=1; i!=numberOfChunks; ++i) {
+				boundaries[i] = Math.max(boundaries[i-1], findChunkStart(channel, size*i/numberOfChunks, size));
+			}
+
+			//Parse ahead of adding by at most two chunks per thread
+			List<Future<ParsedChunk>> pending = new ArrayList<Future<ParsedChunk>>();
+			int submitted = 0;
+			boolean problemLineRead = false;
+			int statedLiterals = 0;
+			int statedClauses = 0;
+			long numberOfClauses = 0;
+			BitSet variablesEncountered = new BitSet();
+			for (int i=0; i!=numberOfChunks; ++i) {
+				while (submitted!=numberOfChunks && submitted-i<2*numberOfThreads) {
+					final ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[submitted], boundaries[submitted+1]-boundaries[submitted]);
+					pending.add(executor.submit(new Callable<ParsedChunk>() {
+						public ParsedChunk call() throws IOException, CNFParseException {
+							return new ParsedChunk(new SDimacsReader(chunk, swapLiteralsAndClausePositions));
+						}
+					}));
+					++submitted;
+				}
+				ParsedChunk parsed = waitFor(pending.get(i));
+				pending.set(i, null);
+				if (!parsed.dimacsOnly) {
+					return false;
+				}
+				if (parsed.problemLineRead) {
+					if (problemLineRead) {
+						throw new CNFParseException("More than one Problem Lines exists in the CNF file.");
+					}
+					problemLineRead = true;
+					statedLiterals = parsed.numberOfLiterals;
+					statedClauses = parsed.numberOfClauses;
+				}
+				int[] data = parsed.literals.data;
+				for (int k=0; k!=parsed.literals.size(); ++k) {
+					if (data[k]==0) {
+						++numberOfClauses;
+					} else {
+						variablesEncountered.set(Math.abs(data[k]));
+					}
+				}
+				solver.addDimacsClauses(data, parsed.literals.size());
+			}
+			
+			//Checking the file for correctness
+			if (numberOfClauses>statedClauses) {
+				throw new CNFParseException("The number of Clauses exceeded the amount stated in the problem statement: " + numberOfClauses + " vs " + statedClauses);
+			}
+			if (variablesEncountered.cardinality()>statedLiterals) {
+				throw new CNFParseException("The number of Literals exceeded the amount stated in the problem statement: " + variablesEncountered.cardinality() + " vs " + statedLiterals);
+			}
+			return true;
+		} finally {
+			executor.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Finds where the first chunk starting at or after a position of the file starts, which is after the first line
+	 * ending a clause from the line holding the position. Reads the file a little at a time, without mapping it.
+	 * @param channel
+	 * @param position
+	 * @param size The size of the file
+	 * @return The position after the line ending, or size if no line ends a clause
+	 * @throws IOException
+	 */
+	private static long findChunkStart(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		//Go back to the start of the line
+		long lineStart = position;
+		boolean found = false;
+		while (lineStart>0 && !found) {
+			long from = Math.max(0, lineStart-SCAN_BUFFER_SIZE);
+			buffer.clear();
+			buffer.limit((int)(lineStart-from));
+			readFully(channel, buffer, from);
+			int i = buffer.limit();
+			while (i>0 && buffer.get(i-1)!='\n' && buffer.get(i-1)!='\r') {
+				--i;
+			}
+			found = i>0;
+			lineStart = from+i;
+		}
+
+		//Look at each line from there for a clause line whose last token is 0
+		int tokensInLine = 0;
+		int firstToken = 0; //The first byte of the first token of the line
+		int firstTokenLength = 0;
+		int tokenLength = 0; //The length of the token being read, 0 between tokens
+		boolean lastTokenIsZero = false;
+		long at = lineStart;
+		while (at<size) {
+			buffer.clear();
+			buffer.limit((int)Math.min(SCAN_BUFFER_SIZE, size-at));
+			readFully(channel, buffer, at);
+			for (int i=0; i!=buffer.limit(); ++i) {
+				int b = buffer.get(i);
+				if (b=='\n' || b=='\r') {
+					boolean clauseLine = tokensInLine>0 && firstToken!='c' && !(firstToken=='p' && firstTokenLength==1);
+					if (clauseLine && lastTokenIsZero) {
+						return at+i+1;
+					}
+					tokensInLine = 0;
+					tokenLength = 0;
+				} else if (b==' ' || b=='\t' || b=='\f' || b==0x0b) {
+					tokenLength = 0;
+				} else {
+					if (tokenLength==0 && ++tokensInLine==1) {
+						firstToken = b;
+					}
+					++tokenLength;
+					if (tokensInLine==1) {
+						firstTokenLength = tokenLength;
+					}
+					lastTokenIsZero = tokenLength==1 && b=='0';
+				}
+			}
+			at += buffer.limit();
+		}
+		return size;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position+buffer.position())<0) {
+				throw new IOException("The file ended while being read");
+			}
+		}
+	}
+
+	/**
+	 * Returns the result of a parse, rethrowing what it threw
+	 * @param future
+	 * @return
+	 * @throws IOException
+	 * @throws CNFParseException
+	 */
+	private static ParsedChunk waitFor(Future<ParsedChunk> future) throws IOException, CNFParseException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			} else if (e.getCause() instanceof CNFParseException) {
+				throw (CNFParseException)e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * The clauses of a chunk, and its problem line if it has one
+	 */
+	private static class ParsedChunk {
+		public SIntList literals; //See SDimacsReader.readClauses
+		public boolean dimacsOnly; //FALSE if a variable is not a DIMACS number
+		public boolean problemLineRead;
+		public int numberOfLiterals;
+		public int numberOfClauses;
+
+		public ParsedChunk(SDimacsReader reader) throws IOException, CNFParseException {
+			this.literals = new SIntList();
+			this.dimacsOnly = reader.readClauses(literals);
+			this.problemLineRead = reader.problemLineRead;
+			this.numberOfLiterals = reader.numberOfLiterals;
+			this.numberOfClauses = reader.numberOfClauses;
+		}
+	}
+}
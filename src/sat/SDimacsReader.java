@@ -0,0 +1,386 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+import sat.CNFParser.CNFParseException;
+
+/**
+ * This is a class to read a CNF file in DIMACS format in a single pass over its bytes, a buffer at a time.
+ *
+ * Tokens are scanned straight out of the buffer, and a literal whose variable is a plain DIMACS number is read as
+ * that number, without making a String of it. Variables may still be named by any other token, whose name is then
+ * decoded as UTF-8. Comment lines are skipped a byte at a time, and the problem line is checked as it is read,
+ * with the same error messages as before. No regular expressions are involved.
+ *
+ * The bytes come from a channel, or from a ByteBuffer such as part of a memory-mapped file, which is copied into
+ * the buffer a buffer at a time, so that only that much of the text is ever on the heap.
+ *
+ * The clauses and distinct variables read are counted as they come, for checkCounts to hold them against the
+ * problem line, so that whatever the clauses are read into is checked the same way.
+ *
+ * Some Terminology:
+ * token			- A run of bytes other than whitespace. A line's first token decides what the line is.
+ * comment line	- A line whose first token starts with 'c'.
+ * problem line	- A line whose first token is "p", which must read "p cnf <variables> <clauses>".
+ * DIMACS number	- A variable named by a positive integer without leading zeros, which is how DIMACS numbers them.
+ *
+ * Class Dependencies:
+ * CNFParser, SIntList
+ */
+public class SDimacsReader {
+
+	public static final int READ_BUFFER_SIZE = 1<<16;
+	public static final int END_OF_FILE = 0; //Returned by next at the end of the file
+	public static final int LITERAL = 1; //Returned by next for each literal of a clause
+	public static final int END_OF_CLAUSE = 2; //Returned by next for the 0 that ends each clause
+	public static final int MAXIMUM_NUMBER_DIGITS = 9; //The longest DIMACS number read without overflowing an int
+
+	private ReadableByteChannel channel; //Where the bytes come from, null once it has been read to the end
+	private ByteBuffer source; //Where the bytes come from instead of channel, null if none
+	private ByteBuffer buffer;
+	private byte[] bytes; //The array of buffer
+	private int position; //The index in bytes of the next byte to read
+	private int limit; //The index in bytes after the last byte read in
+	private byte[] token; //The bytes of the last token
+	private int tokenLength;
+	private boolean atLineStart; //TRUE if the next token is the first of its line
+	private boolean tokenEndedLine; //TRUE if the last token was ended by the end of its line
+	private boolean swapLiteralsAndClausePositions;
+	private String[] numberNames; //The name of each DIMACS number read so far, so that it is only made once
+	public boolean problemLineRead; //TRUE once the problem line has been read
+	public int numberOfLiterals; //The number of variables stated by the problem line
+	public int numberOfClauses; //The number of clauses stated by the problem line
+	public boolean negative; //TRUE if the last LITERAL is negative
+	public int number; //The DIMACS number of the variable of the last LITERAL, or 0 if it is named otherwise
+	public long clausesRead; //The number of clauses read so far, counting an unterminated last clause at the end of the file
+	public int variablesRead; //The number of distinct variables read so far
+	private boolean clauseOpen; //TRUE if a LITERAL has been read since the last END_OF_CLAUSE
+	private boolean[] numbersRead; //Whether each DIMACS number has been read
+	private HashSet<String> namesRead; //The names of the other variables read
+
+	/**
+	 * Creates a reader of the bytes of a channel
+	 * @param channel Read to the end, but not closed
+	 * @param swapLiteralsAndClausePositions TRUE if the CNF file has swapped the positions of number of Literals and Clauses in the
+	 * problem line
+	 */
+	public SDimacsReader(ReadableByteChannel channel, boolean swapLiteralsAndClausePositions) {
+		this.channel = channel;
+		this.source = null;
+		this.bytes = new byte[READ_BUFFER_SIZE];
+		this.buffer = ByteBuffer.wrap(bytes);
+		this.position = 0;
+		this.limit = 0;
+		this.token = new byte[64];
+		this.tokenLength = 0;
+		this.atLineStart = true;
+		this.tokenEndedLine = false;
+		this.swapLiteralsAndClausePositions = swapLiteralsAndClausePositions;
+		this.numberNames = new String[1024];
+		this.problemLineRead = false;
+		this.numberOfLiterals = 0;
+		this.numberOfClauses = 0;
+		this.negative = false;
+		this.number = 0;
+		this.clausesRead = 0;
+		this.variablesRead = 0;
+		this.clauseOpen = false;
+		this.numbersRead = new boolean[1024];
+		this.namesRead = new HashSet<String>();
+	}
+
+	/**
+	 * Creates a reader of the bytes of a ByteBuffer, from its position to its limit
+	 * @param source Which must start at the start of a line
+	 * @param swapLiteralsAndClausePositions See SDimacsReader(ReadableByteChannel, boolean)
+	 */
+	public SDimacsReader(ByteBuffer source, boolean swapLiteralsAndClausePositions) {
+		this((ReadableByteChannel)null, swapLiteralsAndClausePositions);
+		this.source = source;
+	}
+
+	/**
+	 * Reads up to the next literal or end of a clause, skipping comment lines and reading the problem line on the way
+	 * @return LITERAL, whose variable is left in number or name() and its sign in negative, END_OF_CLAUSE or END_OF_FILE.
+	 * The last clause need not be ended by a 0 before END_OF_FILE.
+	 * @throws IOException
+	 * @throws CNFParseException If the problem line is not well formed, or there is more than one
+	 */
+	public int next() throws IOException, CNFParseException {
+		while (true) {
+			boolean firstOfLine = atLineStart;
+			if (!readToken(false)) {
+				if (clauseOpen) {
+					++clausesRead;
+					clauseOpen = false;
+				}
+				return END_OF_FILE;
+			}
+			if (firstOfLine && token[0]=='c') {
+				if (!tokenEndedLine) {
+					skipLine();
+				}
+			} else if (firstOfLine && tokenLength==1 && token[0]=='p') {
+				readProblemLine();
+			} else if (tokenLength==1 && token[0]=='0') {
+				++clausesRead;
+				clauseOpen = false;
+				return END_OF_CLAUSE;
+			} else {
+				negative = token[0]=='-';
+				number = parseNumber(negative ? 1 : 0);
+				clauseOpen = true;
+				countVariable();
+				return LITERAL;
+			}
+		}
+	}
+
+	/**
+	 * Reads every clause left, as long as each variable is a DIMACS number
+	 * @param literals Where each clause is added as the signed DIMACS numbers of its literals, followed by a 0.
+	 * The last clause is ended by a 0 even if the file does not end it.
+	 * @return FALSE if a variable is named otherwise, in which case the clauses read up to it are left in literals
+	 * @throws IOException
+	 * @throws CNFParseException See next
+	 */
+	public boolean readClauses(SIntList literals) throws IOException, CNFParseException {
+		boolean clauseEnded = true;
+		int token;
+		while ((token = next())!=END_OF_FILE) {
+			if (token==END_OF_CLAUSE) {
+				literals.add(0);
+				clauseEnded = true;
+			} else if (number==0) {
+				return false;
+			} else {
+				literals.add(negative ? -number : number);
+				clauseEnded = false;
+			}
+		}
+		if (!clauseEnded) {
+			literals.add(0);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the clauses and variables read so far against the problem line, which is meant for the end of the file
+	 * @throws CNFParseException If there are more clauses or variables than the problem line states
+	 */
+	public void checkCounts() throws CNFParseException {
+		if (clausesRead>numberOfClauses) {
+			throw new CNFParseException("The number of Clauses exceeded the amount stated in the problem statement: " + clausesRead + " vs " + numberOfClauses);
+		}
+		if (variablesRead>numberOfLiterals) {
+			throw new CNFParseException("The number of Literals exceeded the amount stated in the problem statement: " + variablesRead + " vs " + numberOfLiterals);
+		}
+	}
+
+	/**
+	 * Returns the name of the variable of the last LITERAL
+	 * @return
+	 */
+	public String name() {
+		if (number==0) {
+			int start = negative ? 1 : 0;
+			return new String(token, start, tokenLength-start, StandardCharsets.UTF_8);
+		}
+		if (number>=numberNames.length) {
+			String[] grown = new String[Math.max(number+1, 2*numberNames.length)];
+			System.arraycopy(numberNames, 0, grown, 0, numberNames.length);
+			numberNames = grown;
+		}
+		if (numberNames[number]==null) {
+			numberNames[number] = Integer.toString(number);
+		}
+		return numberNames[number];
+	}
+
+	/**
+	 * Counts the variable of the last LITERAL towards variablesRead if it is new
+	 */
+	private void countVariable() {
+		if (number==0) {
+			if (namesRead.add(name())) {
+				++variablesRead;
+			}
+			return;
+		}
+		if (number>=numbersRead.length) {
+			boolean[] grown = new boolean[Math.max(number+1, 2*numbersRead.length)];
+			System.arraycopy(numbersRead, 0, grown, 0, numbersRead.length);
+			numbersRead = grown;
+		}
+		if (!numbersRead[number]) {
+			numbersRead[number] = true;
+			++variablesRead;
+		}
+	}
+
+	/**
+	 * Reads the rest of the problem line and checks it, leaving its counts in numberOfLiterals and numberOfClauses
+	 * @throws IOException
+	 * @throws CNFParseException
+	 */
+	private void readProblemLine() throws IOException, CNFParseException {
+		if (problemLineRead) {
+			throw new CNFParseException("More than one Problem Lines exists in the CNF file.");
+		}
+		problemLineRead = true;
+		long[] counts = new long[2];
+		int tokens = 1;
+		boolean isCNF = false;
+		while (!tokenEndedLine && readToken(true)) {
+			++tokens;
+			if (tokens==2) {
+				isCNF = new String(token, 0, tokenLength, StandardCharsets.UTF_8).toLowerCase().equals("cnf");
+			} else if (tokens<=4) {
+				counts[tokens-3] = parseCount();
+			}
+		}
+		if (tokens!=4) {
+			throw new CNFParseException("The Problem Line is not well formed.");
+		}
+		if (!isCNF) {
+			throw new CNFParseException("The Problem Line does not specify CNF as the format.");
+		}
+		long literals = swapLiteralsAndClausePositions ? counts[1] : counts[0];
+		long clauses = swapLiteralsAndClausePositions ? counts[0] : counts[1];
+		if (literals<0) {
+			throw new CNFParseException("The number of Literals in the Problem Line is not a positive integer.");
+		}
+		if (clauses<0) {
+			throw new CNFParseException("The number of Clauses in the Problem Line is not a positive Integer.");
+		}
+		numberOfLiterals = (int)literals;
+		numberOfClauses = (int)clauses;
+	}
+
+	/**
+	 * Parses the token as a count of the problem line
+	 * @return The count, or -1 if the token is not an unsigned integer that fits an int
+	 */
+	private long parseCount() {
+		long count = 0;
+		for (int i=0; i!=tokenLength; ++i) {
+			int b = token[i];
+			if (b<'0' || b>'9' || count>Integer.MAX_VALUE) {
+				return -1;
+			}
+			count = 10*count + (b-'0');
+		}
+		return count>Integer.MAX_VALUE ? -1 : count;
+	}
+
+	/**
+	 * Parses the token from an offset as a DIMACS number
+	 * @param start The offset, past any sign
+	 * @return The DIMACS number, or 0 if the token is any other name
+	 */
+	private int parseNumber(int start) {
+		int length = tokenLength-start;
+		if (length==0 || length>MAXIMUM_NUMBER_DIGITS || token[start]=='0') {
+			return 0;
+		}
+		int value = 0;
+		for (int i=start; i!=tokenLength; ++i) {
+			int b = token[i];
+			if (b<'0' || b>'9') {
+				return 0;
+			}
+			value = 10*value + (b-'0');
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the next token into token, skipping whitespace. Keeps track of whether it is the first of its line.
+	 * @param withinLine TRUE to stop at the end of the line
+	 * @return FALSE at the end of the file, or of the line if withinLine
+	 * @throws IOException
+	 */
+	private boolean readToken(boolean withinLine) throws IOException {
+		int b = read();
+		while (isWhitespace(b)) {
+			if (b=='\n' || b=='\r') {
+				atLineStart = true;
+				if (withinLine) {
+					tokenEndedLine = true;
+					return false;
+				}
+			}
+			b = read();
+		}
+		if (b<0) {
+			return false;
+		}
+		atLineStart = false;
+		tokenLength = 0;
+		do {
+			if (tokenLength==token.length) {
+				byte[] grown = new byte[2*token.length];
+				System.arraycopy(token, 0, grown, 0, tokenLength);
+				token = grown;
+			}
+			token[tokenLength++] = (byte)b;
+			b = read();
+		} while (b>=0 && !isWhitespace(b));
+		tokenEndedLine = b<0 || b=='\n' || b=='\r';
+		atLineStart = tokenEndedLine;
+		return true;
+	}
+
+	private void skipLine() throws IOException {
+		int b = read();
+		while (b>=0 && b!='\n' && b!='\r') {
+			b = read();
+		}
+		atLineStart = true;
+	}
+
+	private static boolean isWhitespace(int b) {
+		return b==' ' || b=='\t' || b=='\n' || b=='\r' || b=='\f' || b==0x0b;
+	}
+
+	/**
+	 * Returns the next byte, or -1 at the end of the channel
+	 * @return
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		if (position==limit && !fill()) {
+			return -1;
+		}
+		return bytes[position++] & 0xff;
+	}
+
+	private boolean fill() throws IOException {
+		if (source!=null && source.hasRemaining()) {
+			int read = Math.min(source.remaining(), bytes.length);
+			source.get(bytes, 0, read);
+			position = 0;
+			limit = read;
+			return true;
+		}
+		if (channel==null) {
+			return false;
+		}
+		buffer.clear();
+		int read = channel.read(buffer);
+		while (read==0) {
+			read = channel.read(buffer);
+		}
+		if (read<0) {
+			channel = null;
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+}
@@ -0,0 +1,879 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PosLiteral;
+
+/**
+ * This is a class to check a DRAT proof that a Formula has no solution, such as the one a SATSolver writes with
+ * SProofWriter, in text or binary format.
+ *
+ * The proof is first replayed forwards, adding and deleting its clauses with unit propagation on level 0, until the
+ * clauses conflict. It is then checked backwards from that conflict: only the lemmas that took part in a conflict
+ * are checked, each once the lemmas after it have been taken back, and the clauses its check takes part in are
+ * marked in turn. Unit propagation visits the marked clauses first, so that the checks keep reusing the same
+ * clauses and the core stays small. The clauses are kept in a SClauseArena, read as they stream from the file, so
+ * a proof costs about the ints of the clauses it adds however large it is, as deletions take none.
+ *
+ * Some Terminology:
+ * lemma			- A clause added by the proof. It must be RUP, or failing that RAT on its first SLiteral.
+ * RUP			- Reverse Unit Propagation: Assigning every SLiteral of the lemma FALSE leads to a conflict by
+ * 				  unit propagation.
+ * RAT			- Resolution Asymmetric Tautology: Every resolvent of the lemma with a clause containing the
+ * 				  inverse counterpart of its first SLiteral, the pivot, is RUP.
+ * marked			- A clause that took part in the conflict, or in the check of a marked lemma.
+ * core			- The clauses of the Formula that are marked, which have no solution on their own.
+ * clause id		- Each clause is numbered from 0, the clauses of the Formula first, in the order it is read.
+ *
+ * Class Dependencies:
+ * CNFParser, SClauseArena, SIntList, SLiteral, SProofWriter
+ */
+public class SDratChecker {
+
+	public static final int READ_BUFFER_SIZE = 1<<20; //The number of bytes of the proof read at a time
+	public static final int TEXT_DETECTION_BYTES = 64; //The number of bytes looked at to tell a text proof from a binary one
+	private static final int ACTIVE = 1; //Flag of a clause that is added and not deleted
+	private static final int MARKED = 2; //Flag of a clause that takes part in the proof
+
+	public boolean verified; //TRUE if the proof shows that the Formula has no solution
+	public String failure; //Why the proof was not verified, null if it was
+	public int numberOfClauses; //The number of clauses of the Formula
+	public int coreSize; //The number of clauses of the Formula that are marked
+	public int numberOfLemmas; //The number of lemmas read before the conflict
+	public int lemmasChecked; //The number of marked lemmas, which were checked
+	public int ignoredDeletions; //The number of deletions skipped, of clauses that were not found or were the reason of an SLiteral
+	public long parseTime; //The nanoseconds taken to read the proof and replay it forwards
+	public long checkTime; //The nanoseconds taken to check it backwards
+
+	private SClauseArena arena;
+	private SIntList refs; //The clause reference of each clause id
+	private SIntList pivots; //The first SLiteral of each clause id as it was read, NO_LITERAL for the empty clause
+	private SIntList flags; //The flags of each clause id
+	private SIntList steps; //Each addition of the proof as its clause id, each deletion as ~clause id, in order
+	private SIntList stepTrails; //The size of trail before each step
+	private int[] buckets; //The first clause id of each hash, chained through hashNext, -1 for none
+	private SIntList hashNext;
+	private int hashed; //The number of clause ids in buckets
+	private byte[] values; //The value of each SLiteral, indexed by code
+	private int[] reasons; //The clause id that implied each variable, -1 for none
+	private boolean[] seen; //Used to walk back from a conflict, indexed by variable
+	private boolean[] marks; //Used to compare clauses, indexed by code
+	private SIntList trail; //The SLiterals assigned TRUE, in order
+	private int coreHead; //The position in trail up to which the marked clauses are propagated
+	private int head; //The position in trail up to which the other clauses are propagated
+	private SIntList[] coreWatches; //The marked clause ids watching each SLiteral, indexed by code
+	private SIntList[] watches; //The other clause ids watching each SLiteral, indexed by code
+	private SIntList literalCodes; //Used to hold the clause being read
+	private int conflict; //The clause id of the conflict ending the proof, -1 until there is one
+
+	/**
+	 * Checks a proof of a CNF file, which is read with CNFParser
+	 * @param cnfFileName
+	 * @param proofFileName A DRAT proof in text or binary format
+	 * @return The checker, holding the outcome and statistics
+	 * @throws IOException If the proof cannot be read
+	 */
+	public static SDratChecker check(String cnfFileName, String proofFileName) throws IOException {
+		return check(CNFParser.formulaFromFile(cnfFileName, false), proofFileName);
+	}
+
+	/**
+	 * Checks a proof of a Formula, whose variables must be named by their DIMACS numbers, as CNFParser names them
+	 * @param formula
+	 * @param proofFileName A DRAT proof in text or binary format
+	 * @return The checker, holding the outcome and statistics
+	 * @throws IOException If the proof cannot be read
+	 */
+	public static SDratChecker check(Formula formula, String proofFileName) throws IOException {
+		long started = System.nanoTime();
+		SDratChecker checker;
+		FileChannel channel = FileChannel.open(Paths.get(proofFileName), StandardOpenOption.READ);
+		try {
+			//The arena starts at a guess of what the proof needs, as sizing it for the most the proof could need costs
+			//four bytes of memory per byte of a binary proof. It grows if the guess falls short
+			ProofReader reader = new ProofReader(channel);
+			long words = reader.estimatedWords();
+			for (Clause clause:formula.getClauses()) {
+				words += 1+clause.size();
+			}
+			checker = new SDratChecker((int)Math.min(words, Integer.MAX_VALUE-16));
+			checker.addFormula(formula);
+			checker.replay(reader);
+		} finally {
+			channel.close();
+		}
+		long replayed = System.nanoTime();
+		checker.parseTime = replayed-started;
+		checker.verify();
+		checker.checkTime = System.nanoTime()-replayed;
+		return checker;
+	}
+
+	/**
+	 * Creates a checker with no clauses
+	 * @param capacity The number of words of the SClauseArena
+	 */
+	private SDratChecker(int capacity) {
+		this.arena = new SClauseArena(capacity);
+		this.refs = new SIntList();
+		this.pivots = new SIntList();
+		this.flags = new SIntList();
+		this.steps = new SIntList();
+		this.stepTrails = new SIntList();
+		this.buckets = new int[1<<10];
+		Arrays.fill(buckets, -1);
+		this.hashNext = new SIntList();
+		this.hashed = 0;
+		this.values = new byte[0];
+		this.reasons = new int[0];
+		this.seen = new boolean[0];
+		this.marks = new boolean[0];
+		this.trail = new SIntList();
+		this.coreWatches = new SIntList[0];
+		this.watches = new SIntList[0];
+		this.literalCodes = new SIntList();
+		this.conflict = -1;
+		this.failure = null;
+	}
+
+	@Override
+	public String toString() {
+		return (verified ? "VERIFIED" : "NOT VERIFIED: " + failure) + "\n"
+				+ "core: " + coreSize + " of " + numberOfClauses + " clauses, lemmas checked: " + lemmasChecked + " of " + numberOfLemmas
+				+ ", deletions ignored: " + ignoredDeletions + "\n"
+				+ "parse: " + parseTime/1000000 + "ms, check: " + checkTime/1000000 + "ms";
+	}
+
+	/**
+	 * Adds the clauses of a Formula, and propagates them
+	 * @param formula
+	 */
+	private void addFormula(Formula formula) {
+		for (Clause clause:formula.getClauses()) {
+			literalCodes.clear();
+			Iterator<Literal> literalIterator = clause.iterator();
+			while (literalIterator.hasNext()) {
+				Literal literal = literalIterator.next();
+				int index = Integer.parseInt(literal.getVariable().getName())-1;
+				literalCodes.add(SLiteral.code(index, !(literal instanceof PosLiteral)));
+			}
+			add(literalCodes.data, literalCodes.size);
+			++numberOfClauses;
+		}
+	}
+
+	/**
+	 * Reads the proof, adding and deleting its clauses, until they conflict or it ends
+	 * @param reader
+	 * @throws IOException
+	 */
+	private void replay(ProofReader reader) throws IOException {
+		int type;
+		while (conflict<0 && (type = reader.readClause(literalCodes))>=0) {
+			int length = removeDuplicates(literalCodes);
+			if (type==SProofWriter.ADDITION) {
+				steps.add(refs.size);
+				stepTrails.add(trail.size);
+				add(literalCodes.data, length);
+				++numberOfLemmas;
+			} else {
+				int id = find(literalCodes.data, length);
+				if (id<0 || isReason(id)) {
+					++ignoredDeletions;
+				} else {
+					steps.add(~id);
+					stepTrails.add(trail.size);
+					unhash(id);
+					deactivate(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the lemmas backwards from the conflict, setting verified and failure
+	 */
+	private void verify() {
+		if (conflict<0) {
+			failure = "the proof does not lead to a conflict";
+			return;
+		}
+		analyze(conflict, SLiteral.NO_LITERAL);
+		for (int s=steps.size-1; s>=0; --s) {
+			int step = steps.data[s];
+			if (step<0) {
+				activate(~step);
+				continue;
+			}
+			deactivate(step);
+			backtrack(stepTrails.data[s]);
+			if ((flags.data[step]&MARKED)!=0) {
+				++lemmasChecked;
+				if (!isLemmaImplied(step)) {
+					failure = "lemma " + (step-numberOfClauses+1) + " " + clauseToString(step) + " is neither RUP nor RAT";
+					return;
+				}
+			}
+		}
+		for (int id=0; id!=numberOfClauses; ++id) {
+			if ((flags.data[id]&MARKED)!=0) {
+				++coreSize;
+			}
+		}
+		verified = true;
+	}
+
+	/**
+	 * Returns whether a lemma is RUP, or RAT on its pivot, marking the clauses used
+	 * @param id The clause id of the lemma, which must not be active
+	 * @return
+	 */
+	private boolean isLemmaImplied(int id) {
+		int ref = refs.data[id];
+		if (isImplied(ref, -1, SLiteral.NO_LITERAL)) {
+			return true;
+		}
+		int pivot = pivots.data[id];
+		if (pivot==SLiteral.NO_LITERAL) {
+			return false;
+		}
+		int resolved = SLiteral.inverse(pivot);
+		SIntList candidates = new SIntList();
+		for (int other=0; other!=id; ++other) {
+			if ((flags.data[other]&ACTIVE)!=0 && contains(refs.data[other], resolved)) {
+				if (!isImplied(ref, refs.data[other], resolved)) {
+					return false;
+				}
+				candidates.add(other);
+			}
+		}
+		for (int i=0; i!=candidates.size; ++i) {
+			flags.data[candidates.data[i]] |= MARKED;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether assigning FALSE every SLiteral of a clause, and of another but one, leads to a conflict by unit
+	 * propagation, marking the clauses that take part in it if so
+	 * @param ref The clause reference of the clause
+	 * @param otherRef The clause reference of the other clause, -1 for none
+	 * @param excluded The SLiteral of the other clause left out
+	 * @return
+	 */
+	private boolean isImplied(int ref, int otherRef, int excluded) {
+		int saved = trail.size;
+		int trueLiteral = assumeFalse(ref, SLiteral.NO_LITERAL);
+		if (trueLiteral==SLiteral.NO_LITERAL && otherRef>=0) {
+			trueLiteral = assumeFalse(otherRef, excluded);
+		}
+		boolean implied = true;
+		if (trueLiteral!=SLiteral.NO_LITERAL) {
+			analyze(-1, trueLiteral);
+		} else {
+			int id = propagate();
+			if (id>=0) {
+				analyze(id, SLiteral.NO_LITERAL);
+			} else {
+				implied = false;
+			}
+		}
+		backtrack(saved);
+		return implied;
+	}
+
+	/**
+	 * Assigns FALSE every unassigned SLiteral of a clause but one, stopping at the first TRUE one
+	 * @param ref
+	 * @param excluded
+	 * @return The first TRUE SLiteral of the clause, or NO_LITERAL if there is none
+	 */
+	private int assumeFalse(int ref, int excluded) {
+		int[] memory = arena.memory;
+		int size = arena.clauseSize(ref);
+		for (int i=1; i<=size; ++i) {
+			int literal = memory[ref+i];
+			if (literal==excluded) { continue; }
+			if (values[literal]==SLiteral.TRUE) {
+				return literal;
+			}
+			if (values[literal]==SLiteral.UNASSIGNED) {
+				assign(SLiteral.inverse(literal), -1);
+			}
+		}
+		return SLiteral.NO_LITERAL;
+	}
+
+	/**
+	 * Marks the clauses that a conflict, or the value of an SLiteral, follows from by walking back the trail
+	 * @param id The clause id in conflict, -1 for none
+	 * @param literal The SLiteral whose value to explain, if id is -1
+	 */
+	private void analyze(int id, int literal) {
+		if (id>=0) {
+			flags.data[id] |= MARKED;
+			int ref = refs.data[id];
+			for (int i=arena.clauseSize(ref); i>0; --i) {
+				seen[SLiteral.index(arena.memory[ref+i])] = true;
+			}
+		} else {
+			seen[SLiteral.index(literal)] = true;
+		}
+		for (int i=trail.size-1; i>=0; --i) {
+			int index = SLiteral.index(trail.data[i]);
+			if (!seen[index]) { continue; }
+			seen[index] = false;
+			int reason = reasons[index];
+			if (reason>=0) {
+				flags.data[reason] |= MARKED;
+				int ref = refs.data[reason];
+				for (int j=arena.clauseSize(ref); j>0; --j) {
+					int other = SLiteral.index(arena.memory[ref+j]);
+					if (other!=index) {
+						seen[other] = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores a clause and activates it, propagating it on level 0
+	 * @param codes
+	 * @param length
+	 */
+	private void add(int[] codes, int length) {
+		for (int i=0; i!=length; ++i) {
+			ensureVariable(SLiteral.index(codes[i]));
+		}
+		int id = refs.size;
+		refs.add(arena.allocate(codes, length, false));
+		pivots.add(length==0 ? SLiteral.NO_LITERAL : codes[0]);
+		flags.add(0);
+		hash(id);
+		activate(id);
+		if (conflict<0) {
+			conflict = propagate();
+		}
+	}
+
+	/**
+	 * Watches a clause, or assigns its SLiteral if it is unit. The SLiterals that are not FALSE are moved to the
+	 * front, so that the watched ones are never FALSE but for a clause that is satisfied or implies the other.
+	 * Sets conflict if every SLiteral is FALSE.
+	 * @param id
+	 */
+	private void activate(int id) {
+		flags.data[id] |= ACTIVE;
+		int ref = refs.data[id];
+		int[] memory = arena.memory;
+		int size = arena.clauseSize(ref);
+		int notFalse = 0;
+		for (int i=1; i<=size; ++i) {
+			int literal = memory[ref+i];
+			if (values[literal]!=SLiteral.FALSE) {
+				memory[ref+i] = memory[ref+1+notFalse];
+				memory[ref+1+notFalse] = literal;
+				++notFalse;
+			}
+		}
+		if (size>=2) {
+			watchList(id, memory[ref+1]).add(id);
+			watchList(id, memory[ref+2]).add(id);
+		}
+		if (notFalse==0) {
+			if (conflict<0) {
+				conflict = id;
+			}
+		} else if (notFalse==1 && values[memory[ref+1]]==SLiteral.UNASSIGNED) {
+			assign(memory[ref+1], id);
+		}
+	}
+
+	/**
+	 * Stops watching a clause
+	 * @param id
+	 */
+	private void deactivate(int id) {
+		flags.data[id] &= ~ACTIVE;
+		int ref = refs.data[id];
+		if (arena.clauseSize(ref)>=2) {
+			for (int i=1; i<=2; ++i) {
+				int literal = arena.memory[ref+i];
+				if (!remove(coreWatches[literal], id)) {
+					remove(watches[literal], id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the list a clause should watch an SLiteral in
+	 * @param id
+	 * @param literal
+	 * @return
+	 */
+	private SIntList watchList(int id, int literal) {
+		return (flags.data[id]&MARKED)!=0 ? coreWatches[literal] : watches[literal];
+	}
+
+	/**
+	 * Removes a clause id from a watch list. It is looked for from the end, where the latest clauses are, as they
+	 * are the ones taken back first.
+	 * @param list
+	 * @param value
+	 * @return TRUE if it was found
+	 */
+	private static boolean remove(SIntList list, int value) {
+		for (int i=list.size-1; i>=0; --i) {
+			if (list.data[i]==value) {
+				list.data[i] = list.data[--list.size];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Unit propagates the trail, the marked clauses before the others
+	 * @return The clause id of a conflict, or -1 if there is none
+	 */
+	private int propagate() {
+		while (true) {
+			if (coreHead<trail.size) {
+				int id = propagate(trail.data[coreHead++], true);
+				if (id>=0) { return id; }
+			} else if (head<trail.size) {
+				int id = propagate(trail.data[head++], false);
+				if (id>=0) { return id; }
+			} else {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Visits the clauses watching an SLiteral that has become FALSE
+	 * @param literal The SLiteral that has become TRUE
+	 * @param core TRUE to visit the marked clauses, FALSE to visit the others. A marked clause met among the
+	 * others is moved to the marked ones.
+	 * @return The clause id of a conflict, or -1 if there is none
+	 */
+	private int propagate(int literal, boolean core) {
+		int falseLiteral = SLiteral.inverse(literal);
+		SIntList list = core ? coreWatches[falseLiteral] : watches[falseLiteral];
+		int[] memory = arena.memory;
+		int[] ids = list.data;
+		int size = list.size;
+		int j = 0;
+		for (int i=0; i!=size; ++i) {
+			int id = ids[i];
+			int ref = refs.data[id];
+			if (memory[ref+1]==falseLiteral) {
+				memory[ref+1] = memory[ref+2];
+				memory[ref+2] = falseLiteral;
+			}
+			int other = memory[ref+1];
+			boolean keep = true;
+			if (values[other]!=SLiteral.TRUE) {
+				int clauseSize = arena.clauseSize(ref);
+				for (int k=3; k<=clauseSize; ++k) {
+					int candidate = memory[ref+k];
+					if (values[candidate]!=SLiteral.FALSE) {
+						memory[ref+2] = candidate;
+						memory[ref+k] = falseLiteral;
+						watchList(id, candidate).add(id);
+						keep = false;
+						break;
+					}
+				}
+				if (keep) {
+					if (values[other]==SLiteral.FALSE) {
+						j = keepWatch(list, core, id, j, falseLiteral);
+						for (++i; i!=size; ++i) {
+							j = keepWatch(list, core, ids[i], j, falseLiteral);
+						}
+						list.size = j;
+						return id;
+					}
+					assign(other, id);
+				}
+			}
+			if (keep) {
+				j = keepWatch(list, core, id, j, falseLiteral);
+			}
+		}
+		list.size = j;
+		return -1;
+	}
+
+	/**
+	 * Keeps a clause watching an SLiteral, moving it to the marked clauses if it has been marked since
+	 * @param list The list being compacted
+	 * @param core TRUE if list holds the marked clauses
+	 * @param id
+	 * @param position The position in list to keep it at
+	 * @param literal The watched SLiteral
+	 * @return The position in list to keep the next clause at
+	 */
+	private int keepWatch(SIntList list, boolean core, int id, int position, int literal) {
+		if (!core && (flags.data[id]&MARKED)!=0) {
+			coreWatches[literal].add(id);
+			return position;
+		}
+		list.data[position] = id;
+		return position+1;
+	}
+
+	private void assign(int literal, int reason) {
+		values[literal] = SLiteral.TRUE;
+		values[SLiteral.inverse(literal)] = SLiteral.FALSE;
+		reasons[SLiteral.index(literal)] = reason;
+		trail.add(literal);
+	}
+
+	/**
+	 * Unassigns the trail down to a size
+	 * @param size
+	 */
+	private void backtrack(int size) {
+		for (int i=trail.size-1; i>=size; --i) {
+			int literal = trail.data[i];
+			values[literal] = SLiteral.UNASSIGNED;
+			values[SLiteral.inverse(literal)] = SLiteral.UNASSIGNED;
+			reasons[SLiteral.index(literal)] = -1;
+		}
+		trail.size = Math.min(trail.size, size);
+		coreHead = Math.min(coreHead, trail.size);
+		head = Math.min(head, trail.size);
+	}
+
+	/**
+	 * Returns whether a clause is the reason of an SLiteral on the trail. Deleting it would unassign the SLiteral,
+	 * which the solver writing the proof did not mean, so such deletions are ignored.
+	 * @param id
+	 * @return
+	 */
+	private boolean isReason(int id) {
+		int ref = refs.data[id];
+		for (int i=arena.clauseSize(ref); i>0; --i) {
+			int literal = arena.memory[ref+i];
+			if (values[literal]==SLiteral.TRUE && reasons[SLiteral.index(literal)]==id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes repeated SLiterals from a clause
+	 * @param codes
+	 * @return The number of SLiterals left
+	 */
+	private int removeDuplicates(SIntList codes) {
+		int length = 0;
+		for (int i=0; i!=codes.size; ++i) {
+			int literal = codes.data[i];
+			ensureVariable(SLiteral.index(literal));
+			if (!marks[literal]) {
+				marks[literal] = true;
+				codes.data[length++] = literal;
+			}
+		}
+		for (int i=0; i!=length; ++i) {
+			marks[codes.data[i]] = false;
+		}
+		codes.size = length;
+		return length;
+	}
+
+	/**
+	 * Returns the active clause with the same SLiterals as the given ones, in any order
+	 * @param codes
+	 * @param length
+	 * @return Its clause id, or -1 if there is none
+	 */
+	private int find(int[] codes, int length) {
+		int found = -1;
+		for (int i=0; i!=length; ++i) {
+			marks[codes[i]] = true;
+		}
+		for (int id=buckets[hash(codes, 0, length) & (buckets.length-1)]; id>=0; id=hashNext.data[id]) {
+			int ref = refs.data[id];
+			if (arena.clauseSize(ref)!=length) { continue; }
+			boolean same = true;
+			for (int i=1; i<=length && same; ++i) {
+				same = marks[arena.memory[ref+i]];
+			}
+			if (same) {
+				found = id;
+				break;
+			}
+		}
+		for (int i=0; i!=length; ++i) {
+			marks[codes[i]] = false;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns a hash of some SLiterals that does not depend on their order
+	 * @param codes
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	private static int hash(int[] codes, int start, int length) {
+		int sum = 0;
+		int product = 1;
+		int xor = 0;
+		for (int i=start; i!=start+length; ++i) {
+			sum += codes[i];
+			product *= codes[i]+1;
+			xor ^= codes[i];
+		}
+		return 1023*sum + product + 31*xor;
+	}
+
+	private void hash(int id) {
+		if (hashed>=buckets.length) {
+			int[] grown = new int[2*buckets.length];
+			Arrays.fill(grown, -1);
+			for (int bucket=0; bucket!=buckets.length; ++bucket) {
+				int next;
+				for (int other=buckets[bucket]; other>=0; other=next) {
+					next = hashNext.data[other];
+					int position = clauseHash(other) & (grown.length-1);
+					hashNext.data[other] = grown[position];
+					grown[position] = other;
+				}
+			}
+			buckets = grown;
+		}
+		while (hashNext.size<=id) {
+			hashNext.add(-1);
+		}
+		int position = clauseHash(id) & (buckets.length-1);
+		hashNext.data[id] = buckets[position];
+		buckets[position] = id;
+		++hashed;
+	}
+
+	private void unhash(int id) {
+		int position = clauseHash(id) & (buckets.length-1);
+		if (buckets[position]==id) {
+			buckets[position] = hashNext.data[id];
+		} else {
+			int previous = buckets[position];
+			while (hashNext.data[previous]!=id) {
+				previous = hashNext.data[previous];
+			}
+			hashNext.data[previous] = hashNext.data[id];
+		}
+		--hashed;
+	}
+
+	private int clauseHash(int id) {
+		int ref = refs.data[id];
+		return hash(arena.memory, ref+1, arena.clauseSize(ref));
+	}
+
+	private boolean contains(int ref, int literal) {
+		for (int i=arena.clauseSize(ref); i>0; --i) {
+			if (arena.memory[ref+i]==literal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a clause in DIMACS
+	 * @param id
+	 * @return
+	 */
+	private String clauseToString(int id) {
+		StringBuilder builder = new StringBuilder("[");
+		int ref = refs.data[id];
+		for (int i=1; i<=arena.clauseSize(ref); ++i) {
+			int literal = arena.memory[ref+i];
+			builder.append(SLiteral.isNegative(literal) ? "-" : "").append(SLiteral.index(literal)+1).append(i<arena.clauseSize(ref) ? " " : "");
+		}
+		return builder.append("]").toString();
+	}
+
+	/**
+	 * Grows the arrays indexed by variable or by code to hold a variable index
+	 * @param index
+	 */
+	private void ensureVariable(int index) {
+		if (index<seen.length) { return; }
+		int variables = Math.max(index+1, 2*seen.length);
+		byte[] newValues = new byte[2*variables];
+		System.arraycopy(values, 0, newValues, 0, values.length);
+		values = newValues;
+		int[] newReasons = new int[variables];
+		Arrays.fill(newReasons, -1);
+		System.arraycopy(reasons, 0, newReasons, 0, reasons.length);
+		reasons = newReasons;
+		seen = Arrays.copyOf(seen, variables);
+		marks = Arrays.copyOf(marks, 2*variables);
+		SIntList[] newCoreWatches = new SIntList[2*variables];
+		SIntList[] newWatches = new SIntList[2*variables];
+		System.arraycopy(coreWatches, 0, newCoreWatches, 0, coreWatches.length);
+		System.arraycopy(watches, 0, newWatches, 0, watches.length);
+		for (int code=coreWatches.length; code!=2*variables; ++code) {
+			newCoreWatches[code] = new SIntList(2);
+			newWatches[code] = new SIntList(2);
+		}
+		coreWatches = newCoreWatches;
+		watches = newWatches;
+	}
+
+	/**
+	 * Reads the clauses of a proof from a channel a buffer at a time, telling a binary proof from a text one by
+	 * its first bytes
+	 */
+	private static class ProofReader {
+
+		private FileChannel channel;
+		private ByteBuffer buffer;
+		private boolean binary;
+
+		public ProofReader(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+			this.buffer.flip();
+			fill();
+			this.binary = false;
+			for (int i=0; i!=Math.min(buffer.remaining(), TEXT_DETECTION_BYTES); ++i) {
+				int b = buffer.get(i) & 0xff;
+				if ((i==0 && b==SProofWriter.ADDITION) || (b<32 && b!='\n' && b!='\r' && b!='\t') || b>=127) {
+					binary = true;
+				}
+			}
+		}
+
+		/**
+		 * Returns a guess at the words the clauses of the proof take in a SClauseArena. About half of a proof is
+		 * deletions, which take none, and a SLiteral takes about two bytes of a binary proof and six of a text one.
+		 * @return
+		 * @throws IOException
+		 */
+		public long estimatedWords() throws IOException {
+			return (binary ? channel.size()/4 : channel.size()/12)+16;
+		}
+
+		/**
+		 * Reads the next clause
+		 * @param literalCodes Cleared, then filled with the codes of the SLiterals of the clause
+		 * @return SProofWriter.ADDITION or SProofWriter.DELETION, or -1 at the end of the proof
+		 * @throws IOException
+		 */
+		public int readClause(SIntList literalCodes) throws IOException {
+			literalCodes.clear();
+			return binary ? readBinaryClause(literalCodes) : readTextClause(literalCodes);
+		}
+
+		private int readBinaryClause(SIntList literalCodes) throws IOException {
+			int type = read();
+			if (type<0) { return -1; }
+			if (type!=SProofWriter.ADDITION && type!=SProofWriter.DELETION) {
+				throw new IOException("Unexpected byte " + type + " in binary proof");
+			}
+			while (true) {
+				int encoded = 0;
+				int shift = 0;
+				int b;
+				do {
+					b = read();
+					if (b<0) { throw new IOException("Binary proof ends within a clause"); }
+					encoded |= (b & 0x7f) << shift;
+					shift += 7;
+				} while ((b & 0x80)!=0);
+				if (encoded==0) {
+					return type;
+				}
+				literalCodes.add(SLiteral.code((encoded>>>1)-1, (encoded&1)!=0));
+			}
+		}
+
+		private int readTextClause(SIntList literalCodes) throws IOException {
+			int type = SProofWriter.ADDITION;
+			int b = skipSpaces();
+			while (b=='c') {
+				while (b>=0 && b!='\n') {
+					b = read();
+				}
+				b = skipSpaces();
+			}
+			if (b<0) { return -1; }
+			if (b=='d') {
+				type = SProofWriter.DELETION;
+				b = skipSpaces();
+			}
+			while (true) {
+				boolean negative = b=='-';
+				if (negative) {
+					b = read();
+				}
+				if (b<'0' || b>'9') {
+					throw new IOException("Unexpected character " + (char)b + " in text proof");
+				}
+				int number = 0;
+				while (b>='0' && b<='9') {
+					number = 10*number + (b-'0');
+					b = read();
+				}
+				if (number==0) {
+					return type;
+				}
+				literalCodes.add(SLiteral.code(number-1, negative));
+				if (b!=' ' && b!='\t' && b!='\r' && b!='\n') {
+					throw new IOException("Unexpected character " + (char)b + " in text proof");
+				}
+				b = skipSpaces();
+				if (b<0) { throw new IOException("Text proof ends within a clause"); }
+			}
+		}
+
+		private int skipSpaces() throws IOException {
+			int b = read();
+			while (b==' ' || b=='\t' || b=='\r' || b=='\n') {
+				b = read();
+			}
+			return b;
+		}
+
+		/**
+		 * Returns the next byte, or -1 at the end of the channel
+		 * @return
+		 * @throws IOException
+		 */
+		private int read() throws IOException {
+			if (!buffer.hasRemaining() && !fill()) {
+				return -1;
+			}
+			return buffer.get() & 0xff;
+		}
+
+		private boolean fill() throws IOException {
+			buffer.compact();
+			int read = channel.read(buffer);
+			while (read==0) {
+				read = channel.read(buffer);
+			}
+			buffer.flip();
+			return buffer.hasRemaining();
+		}
+	}
+}
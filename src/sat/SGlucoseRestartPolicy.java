@@ -0,0 +1,83 @@
+package sat;
+
+/**
+ * A SRestartPolicy that restarts when the clauses learned recently are much worse than the average learned clause, 
+ * measured by their literal block distance (LBD).
+ * A restart is blocked when the search is assigning far more SLiterals than usual, as it might be close to a solution.
+ * 
+ * Some Terminology:
+ * LBD			- Literal Block Distance: The number of different decision levels among the SLiterals of a clause.
+ * 				  Clauses with a low LBD link few decisions together and are the most useful.
+ * 
+ * Class Dependencies:
+ * SRestartPolicy
+ */
+public class SGlucoseRestartPolicy implements SRestartPolicy {
+	
+	public static final int LBD_QUEUE_SIZE = 50; //The number of recent LBDs averaged
+	public static final double LBD_RATIO = 0.8; //Restart if recentAverage*LBD_RATIO > overallAverage
+	public static final int TRAIL_QUEUE_SIZE = 5000; //The number of recent assignedLiterals sizes averaged
+	public static final double TRAIL_RATIO = 1.4; //Block restarts if numberOfAssignedLiterals > recentAverage*TRAIL_RATIO
+	public static final long BLOCKING_MIN_CONFLICTS = 10000; //The number of conflicts before restarts can be blocked
+	
+	private int[] lbdQueue; //A ring buffer of the recent LBDs
+	private int lbdQueueSize;
+	private int lbdQueueHead;
+	private long lbdQueueSum;
+	private int[] trailQueue; //A ring buffer of the recent sizes of assignedLiterals
+	private int trailQueueSize;
+	private int trailQueueHead;
+	private long trailQueueSum;
+	public long conflicts;
+	public long lbdSum;
+	
+	public SGlucoseRestartPolicy() {
+		this.lbdQueue = new int[LBD_QUEUE_SIZE];
+		this.trailQueue = new int[TRAIL_QUEUE_SIZE];
+		this.conflicts = 0;
+		this.lbdSum = 0;
+	}
+
+	@Override
+	public boolean conflictOccurred(int learnedClauseLBD, int numberOfAssignedLiterals) {
+		++conflicts;
+		lbdSum += learnedClauseLBD;
+		
+		//Block the restart if the search got much further than usual
+		if (conflicts>BLOCKING_MIN_CONFLICTS && lbdQueueSize==LBD_QUEUE_SIZE && trailQueueSize==TRAIL_QUEUE_SIZE 
+				&& numberOfAssignedLiterals>TRAIL_RATIO*trailQueueSum/TRAIL_QUEUE_SIZE) {
+			clearLBDQueue();
+		}
+		trailQueueSum += numberOfAssignedLiterals;
+		if (trailQueueSize==TRAIL_QUEUE_SIZE) {
+			trailQueueSum -= trailQueue[trailQueueHead];
+		} else {
+			++trailQueueSize;
+		}
+		trailQueue[trailQueueHead] = numberOfAssignedLiterals;
+		trailQueueHead = (trailQueueHead+1)%TRAIL_QUEUE_SIZE;
+		
+		lbdQueueSum += learnedClauseLBD;
+		if (lbdQueueSize==LBD_QUEUE_SIZE) {
+			lbdQueueSum -= lbdQueue[lbdQueueHead];
+		} else {
+			++lbdQueueSize;
+		}
+		lbdQueue[lbdQueueHead] = learnedClauseLBD;
+		lbdQueueHead = (lbdQueueHead+1)%LBD_QUEUE_SIZE;
+		
+		return lbdQueueSize==LBD_QUEUE_SIZE 
+				&& ((double)lbdQueueSum/LBD_QUEUE_SIZE)*LBD_RATIO > (double)lbdSum/conflicts;
+	}
+
+	@Override
+	public void restarted() {
+		clearLBDQueue();
+	}
+	
+	private void clearLBDQueue() {
+		lbdQueueSize = 0;
+		lbdQueueHead = 0;
+		lbdQueueSum = 0;
+	}
+}
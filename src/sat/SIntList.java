@@ -0,0 +1,95 @@
+package sat;
+
+/**
+ * This is a growable list of primitive ints, used instead of an ArrayList of Integers where boxing would 
+ * cost an object per element.
+ * data and size are public so that hot loops can walk the list directly.
+ */
+public class SIntList {
+	public int[] data;
+	public int size;
+	
+	/**
+	 * Default constructor
+	 */
+	public SIntList() {
+		this(4);
+	}
+	
+	public SIntList(int capacity) {
+		this.data = new int[Math.max(capacity, 1)];
+		this.size = 0;
+	}
+	
+	public void add(int value) {
+		if (size==data.length) {
+			grow(size+1);
+		}
+		data[size++] = value;
+	}
+	
+	/**
+	 * Adds two values at once, such as a pair of clause reference and blocker in a watcher list
+	 * @param first
+	 * @param second
+	 */
+	public void add(int first, int second) {
+		if (size+2>data.length) {
+			grow(size+2);
+		}
+		data[size++] = first;
+		data[size++] = second;
+	}
+	
+	public int get(int index) {
+		return data[index];
+	}
+	
+	public void set(int index, int value) {
+		data[index] = value;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size==0;
+	}
+	
+	public int last() {
+		return data[size-1];
+	}
+	
+	public int removeLast() {
+		return data[--size];
+	}
+	
+	/**
+	 * Drops every element from index newSize onwards
+	 * @param newSize
+	 */
+	public void shrink(int newSize) {
+		size = newSize;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Returns a copy of the elements as an array of exactly size ints
+	 * @return
+	 */
+	public int[] toArray() {
+		int[] array = new int[size];
+		System.arraycopy(data, 0, array, 0, size);
+		return array;
+	}
+	
+	private void grow(int minimumCapacity) {
+		int[] newData = new int[Math.max(minimumCapacity, data.length*2)];
+		System.arraycopy(data, 0, newData, 0, size);
+		data = newData;
+	}
+}
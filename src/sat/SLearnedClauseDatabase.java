@@ -0,0 +1,234 @@
+package sat;
+
+import java.util.Arrays;
+
+/**
+ * This is a class to keep track of the clauses learned by a SATSolver, separately from the clauses of the Formula.
+ * Learned clauses are kept in three tiers by their literal block distance (LBD). Periodically, the least active
+ * half of the local tier is deleted, and mid tier clauses that have not been used for a while are moved down to it.
+ * The clauses themselves, with their LBD and activity, are stored in the SClauseArena of the SATSolver.
+ * 
+ * Some Terminology:
+ * LBD			- Literal Block Distance: The number of different decision levels among the SLiterals of a clause.
+ * core			- Clauses of LBD up to CORE_LBD_LIMIT, which are never deleted.
+ * mid			- Clauses of LBD up to MID_LBD_LIMIT, which are kept as long as they are used.
+ * local		- Every other clause, which compete on activity to survive each reduction.
+ * 
+ * Class Dependencies:
+ * SATSolver, SClauseArena, SLiteral, SIntList
+ */
+public class SLearnedClauseDatabase {
+	
+	public static final int CORE_LBD_LIMIT = 2;
+	public static final int MID_LBD_LIMIT = 6;
+	public static final long FIRST_REDUCTION = 2000; //The number of conflicts before the first reduction
+	public static final long REDUCTION_INCREMENT = 300; //By how much the number of conflicts between reductions grows
+	public static final long MID_REDUCTION_INTERVAL = 10000; //The number of conflicts between demotions of unused mid clauses
+	public static final float ACTIVITY_DECAY = 0.999f; //By how much the activities decay per conflict
+	public static final float ACTIVITY_RESCALE_LIMIT = 1e20f; //The activity above which all activities are rescaled
+	
+	public SClauseArena arena;
+	public SIntList coreClauses; //Clause references of the core tier
+	public SIntList midClauses; //Clause references of the mid tier
+	public SIntList localClauses; //Clause references of the local tier
+	public float activityIncrement;
+	public long nextReduction; //The number of conflicts at which to reduce next
+	public long reductionInterval;
+	public long nextMidReduction; //The number of conflicts at which to demote unused mid clauses next
+	public long deletedClauses; //The number of clauses deleted so far
+	
+	/**
+	 * Creates an empty database of clauses stored in arena
+	 * @param arena
+	 */
+	public SLearnedClauseDatabase(SClauseArena arena) {
+		this.arena = arena;
+		this.coreClauses = new SIntList();
+		this.midClauses = new SIntList();
+		this.localClauses = new SIntList();
+		this.activityIncrement = 1.0f;
+		this.reductionInterval = FIRST_REDUCTION;
+		this.nextReduction = FIRST_REDUCTION;
+		this.nextMidReduction = MID_REDUCTION_INTERVAL;
+		this.deletedClauses = 0;
+	}
+	
+	/**
+	 * Returns the number of learned clauses stored
+	 * @return
+	 */
+	public int size() {
+		return coreClauses.size()+midClauses.size()+localClauses.size();
+	}
+	
+	/**
+	 * Stores a newly learned clause into the tier of its LBD
+	 * @param ref The clause reference of a learned clause
+	 * @param lbd The LBD of the clause, computed when it was learned
+	 */
+	public void addClause(int ref, int lbd) {
+		arena.setLBD(ref, lbd);
+		arena.setUsed(ref, true);
+		if (lbd<=CORE_LBD_LIMIT) {
+			coreClauses.add(ref);
+		} else if (lbd<=MID_LBD_LIMIT) {
+			midClauses.add(ref);
+		} else {
+			localClauses.add(ref);
+		}
+		bumpActivity(ref);
+	}
+	
+	/**
+	 * Must be called when a learned clause takes part in conflict analysis.
+	 * Bumps its activity, and lowers its LBD if it is now lower. The clause moves to its new tier at the next reduction.
+	 * @param ref
+	 * @param lbd The LBD of the clause under the current assignment
+	 */
+	public void clauseUsed(int ref, int lbd) {
+		arena.setUsed(ref, true);
+		bumpActivity(ref);
+		if (lbd<arena.lbd(ref)) {
+			arena.setLBD(ref, lbd);
+		}
+	}
+	
+	/**
+	 * Decays the activity of every clause, so that recent conflicts weigh more. Called once per conflict.
+	 */
+	public void decayActivities() {
+		activityIncrement *= 1/ACTIVITY_DECAY;
+	}
+	
+	/**
+	 * Returns TRUE if it is time for reduce() to be called
+	 * @param conflicts The number of conflicts of the SATSolver so far
+	 * @return
+	 */
+	public boolean isReductionDue(long conflicts) {
+		return conflicts>=nextReduction;
+	}
+	
+	/**
+	 * Moves clauses whose LBD improved to their new tier, demotes mid clauses that have not been used recently, 
+	 * and deletes the least active half of the local clauses, except those that are the reason of an assigned SLiteral.
+	 * Deleted clauses are marked in the SClauseArena, and must then be removed from the watchers of their SLiterals 
+	 * by the caller.
+	 * @param conflicts The number of conflicts of the SATSolver so far
+	 * @param values The value of each SLiteral of the SATSolver, indexed by code
+	 * @param reasons The clause reference of the reason of each variable of the SATSolver
+	 * @return The clause references of the deleted clauses
+	 */
+	public SIntList reduce(long conflicts, byte[] values, int[] reasons) {
+		reductionInterval += REDUCTION_INCREMENT;
+		nextReduction = conflicts+reductionInterval;
+		boolean demoteUnusedMidClauses = conflicts>=nextMidReduction;
+		if (demoteUnusedMidClauses) {
+			nextMidReduction = conflicts+MID_REDUCTION_INTERVAL;
+		}
+		
+		//Move the clauses to their tiers
+		SIntList newMidClauses = new SIntList(midClauses.size());
+		SIntList newLocalClauses = new SIntList(localClauses.size());
+		for (int i=0; i!=midClauses.size; ++i) {
+			int ref = midClauses.data[i];
+			int lbd = arena.lbd(ref);
+			if (lbd<=CORE_LBD_LIMIT) {
+				coreClauses.add(ref);
+			} else if (arena.isUsed(ref) || !demoteUnusedMidClauses) {
+				newMidClauses.add(ref);
+			} else {
+				newLocalClauses.add(ref);
+			}
+			if (demoteUnusedMidClauses) {
+				arena.setUsed(ref, false);
+			}
+		}
+		for (int i=0; i!=localClauses.size; ++i) {
+			int ref = localClauses.data[i];
+			int lbd = arena.lbd(ref);
+			if (lbd<=CORE_LBD_LIMIT) {
+				coreClauses.add(ref);
+			} else if (lbd<=MID_LBD_LIMIT) {
+				newMidClauses.add(ref);
+			} else {
+				newLocalClauses.add(ref);
+			}
+			arena.setUsed(ref, false);
+		}
+		
+		//Sort the local clauses by ascending activity. Positive floats sort like their bits, so they can be packed 
+		//together with the position of each clause into longs.
+		int localSize = newLocalClauses.size();
+		long[] sortKeys = new long[localSize];
+		for (int i=0; i!=localSize; ++i) {
+			sortKeys[i] = ((long)Float.floatToRawIntBits(arena.activity(newLocalClauses.data[i]))<<32) | i;
+		}
+		Arrays.sort(sortKeys);
+		
+		//Delete the least active half of the local clauses
+		SIntList deleted = new SIntList();
+		int deleteLimit = localSize/2;
+		localClauses = new SIntList(localSize-deleteLimit);
+		for (int i=0; i!=localSize; ++i) {
+			int ref = newLocalClauses.data[(int)sortKeys[i]];
+			if (deleted.size()<deleteLimit && !isLocked(ref, values, reasons)) {
+				arena.delete(ref);
+				deleted.add(ref);
+			} else {
+				localClauses.add(ref);
+			}
+		}
+		midClauses = newMidClauses;
+		deletedClauses += deleted.size();
+		return deleted;
+	}
+	
+	/**
+	 * Replaces every clause reference with the one given by arena.relocate(), when the SATSolver compacts its arena
+	 * @param to The new SClauseArena
+	 */
+	public void relocate(SClauseArena to) {
+		relocate(coreClauses, to);
+		relocate(midClauses, to);
+		relocate(localClauses, to);
+		arena = to;
+	}
+	
+	private void relocate(SIntList clauses, SClauseArena to) {
+		for (int i=0; i!=clauses.size; ++i) {
+			clauses.data[i] = arena.relocate(clauses.data[i], to);
+		}
+	}
+	
+	/**
+	 * Returns TRUE if a clause is the reason of an assigned SLiteral, so it may not be deleted.
+	 * The SLiteral implied by a clause is always its first SLiteral.
+	 * @param ref
+	 * @param values
+	 * @param reasons
+	 * @return
+	 */
+	private boolean isLocked(int ref, byte[] values, int[] reasons) {
+		int first = arena.literal(ref, 0);
+		return values[first]==SLiteral.TRUE && reasons[SLiteral.index(first)]==ref;
+	}
+	
+	private void bumpActivity(int ref) {
+		float activity = arena.activity(ref)+activityIncrement;
+		arena.setActivity(ref, activity);
+		if (activity>ACTIVITY_RESCALE_LIMIT) {
+			rescaleActivities(coreClauses);
+			rescaleActivities(midClauses);
+			rescaleActivities(localClauses);
+			activityIncrement *= 1/ACTIVITY_RESCALE_LIMIT;
+		}
+	}
+	
+	private void rescaleActivities(SIntList clauses) {
+		for (int i=0; i!=clauses.size; ++i) {
+			int ref = clauses.data[i];
+			arena.setActivity(ref, arena.activity(ref)*(1/ACTIVITY_RESCALE_LIMIT));
+		}
+	}
+}
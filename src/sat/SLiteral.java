@@ -1,57 +1,55 @@
 package sat;
 
 /**
- * This is a class representing a Literal
- * 
+ * This is a class describing how Literals are represented inside the SATSolver.
+ * An SLiteral is not an object but an int, its code, so that the assignment of every SLiteral can be kept in
+ * primitive arrays indexed by code or by variable index, and the search never allocates.
+ *
+ * Some Terminology:
+ * variable index	- Each variable is numbered from 0 in the order SLiteralPool first sees it.
+ * code			- 2*index+1 for a negative SLiteral, 2*index for a positive one. The inverse counterpart of an
+ * 				  SLiteral is therefore code^1, and its variable index is code>>1.
+ * value		- TRUE, FALSE or UNASSIGNED, kept as a byte per code so that an SLiteral and its inverse counterpart
+ * 				  are both assigned at once without looking at which one is negative.
+ *
  * Class Dependencies:
- * SClause, SATSolver, SLiteralPool
- * 
+ * SATSolver, SLiteralPool, SClauseArena, SLearnedClauseDatabase
+ *
  * @author Kang Yue Sheng Benjamin
  *
  */
-public class SLiteral implements Comparable<SLiteral>{
-	
-	public SLiteral inverseCounterpart; //A reference to its inverse counterpart
-	public boolean value;
-	public boolean assigned;
-	public boolean isNegative; 
-	public int priority;
-	public int addCount;
-	
-	public SLiteral(boolean isNegative) {
-		this.assigned = false;
-		this.isNegative = isNegative;
-		this.priority = 0;
-		this.addCount = 0;
-	}
-	public void setInverseCounterpart(SLiteral inverseCounterpart){
-		this.inverseCounterpart = inverseCounterpart;
-	}
-	public void setValue(boolean value) {
-		this.value = value;
-		this.inverseCounterpart.value = !value;
-		this.inverseCounterpart.assigned = this.assigned = true;
-	}
+public final class SLiteral {
+
+	public static final byte TRUE = 1;
+	public static final byte FALSE = -1;
+	public static final byte UNASSIGNED = 0;
+	public static final int NO_LITERAL = -1; //Stands for no SLiteral, where a code is expected
 
-	public void setUnassigned() {
-		this.assigned = this.inverseCounterpart.assigned = false;
+	/**
+	 * SLiterals are only ever ints, so there are no instances of this class
+	 */
+	private SLiteral() {
 	}
-	
-	public void setEvalutateToTrue(){
-		this.value = 
-		this.assigned = this.inverseCounterpart.assigned = true;
-		this.inverseCounterpart.value = false;
+
+	/**
+	 * Returns the code of an SLiteral
+	 * @param index The variable index of the SLiteral
+	 * @param isNegative
+	 * @return
+	 */
+	public static int code(int index, boolean isNegative) {
+		return (index<<1) | (isNegative ? 1 : 0);
 	}
-	public void invertValue(){
-		this.inverseCounterpart.value = this.value;
-		this.value = !this.value;
+
+	public static int index(int code) {
+		return code>>1;
 	}
 
-	
-	@Override
-	public int compareTo(SLiteral o) { //A compareTo for descending sorting of SLiterals by priority
-		return o.priority-this.priority;
+	public static int inverse(int code) {
+		return code^1;
 	}
 
-	
+	public static boolean isNegative(int code) {
+		return (code&1)!=0;
+	}
 }
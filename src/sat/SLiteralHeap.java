@@ -0,0 +1,150 @@
+package sat;
+
+import java.util.Arrays;
+
+/**
+ * This is an indexed binary max-heap of variables, ordered by their activity.
+ * Variables are represented by the index of their SLiterals, so that the heap position of each variable is known
+ * and its activity can be increased or it can be reinserted in O(log n).
+ *
+ * Some Terminology:
+ * activity		- A score of how often a variable has been involved in recent conflicts
+ * EVSIDS		- Exponential Variable State Independent Decaying Sum: Instead of decaying every activity after each
+ * 				  conflict, the bump increment grows exponentially, and all activities are rescaled before they overflow.
+ *
+ * Class Dependencies:
+ * SLiteralPool
+ */
+public class SLiteralHeap {
+
+	public static final double ACTIVITY_DECAY = 0.95; //By how much the activities decay per conflict
+	public static final double ACTIVITY_RESCALE_LIMIT = 1e100; //The activity above which all activities are rescaled
+
+	public double[] activities; //The activity of each variable
+	public double activityIncrement; //By how much to increment the activity of a variable per bump
+	private int[] heap; //The variables in heap order
+	private int[] positions; //The position of each variable in heap, -1 if it is not in the heap
+	private int size;
+
+	/**
+	 * Creates an empty heap for variables of indexes 0 to numberOfVariables-1
+	 * @param numberOfVariables
+	 */
+	public SLiteralHeap(int numberOfVariables) {
+		this.activities = new double[numberOfVariables];
+		this.activityIncrement = 1.0;
+		this.heap = new int[numberOfVariables];
+		this.positions = new int[numberOfVariables];
+		for (int i=0; i!=numberOfVariables; ++i) {
+			this.positions[i] = -1;
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Makes room for variables up to index numberOfVariables-1, which start outside the heap with no activity
+	 * @param numberOfVariables
+	 */
+	public void addVariables(int numberOfVariables) {
+		int oldNumberOfVariables = activities.length;
+		if (numberOfVariables<=oldNumberOfVariables) { return; }
+		activities = Arrays.copyOf(activities, numberOfVariables);
+		heap = Arrays.copyOf(heap, numberOfVariables);
+		positions = Arrays.copyOf(positions, numberOfVariables);
+		for (int i=oldNumberOfVariables; i!=numberOfVariables; ++i) {
+			positions[i] = -1;
+		}
+	}
+
+	public boolean isEmpty() {
+		return size==0;
+	}
+
+	public boolean contains(int variable) {
+		return positions[variable]>=0;
+	}
+
+	/**
+	 * Inserts a variable into the heap if it is not already inside
+	 * @param variable
+	 */
+	public void insert(int variable) {
+		if (positions[variable]>=0) { return; }
+		heap[size] = variable;
+		positions[variable] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Removes and returns the variable with the highest activity
+	 * @return
+	 */
+	public int removeMax() {
+		int max = heap[0];
+		int last = heap[--size];
+		positions[max] = -1;
+		if (size!=0) {
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		return max;
+	}
+
+	/**
+	 * Increases the activity of a variable by activityIncrement, rescaling all activities if they grow too large
+	 * @param variable
+	 */
+	public void bump(int variable) {
+		if ((activities[variable] += activityIncrement) > ACTIVITY_RESCALE_LIMIT) {
+			for (int i=0; i!=activities.length; ++i) {
+				activities[i] *= 1/ACTIVITY_RESCALE_LIMIT;
+			}
+			activityIncrement *= 1/ACTIVITY_RESCALE_LIMIT;
+		}
+		if (positions[variable]>=0) {
+			siftUp(positions[variable]);
+		}
+	}
+
+	/**
+	 * Decays every activity, by making future bumps weigh more.
+	 */
+	public void decay() {
+		activityIncrement *= 1/ACTIVITY_DECAY;
+	}
+
+	private void siftUp(int position) {
+		int variable = heap[position];
+		double activity = activities[variable];
+		while (position!=0) {
+			int parentPosition = (position-1)>>1;
+			int parent = heap[parentPosition];
+			if (activities[parent]>=activity) { break; }
+			heap[position] = parent;
+			positions[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = variable;
+		positions[variable] = position;
+	}
+
+	private void siftDown(int position) {
+		int variable = heap[position];
+		double activity = activities[variable];
+		while (true) {
+			int childPosition = (position<<1)+1;
+			if (childPosition>=size) { break; }
+			if (childPosition+1<size && activities[heap[childPosition+1]]>activities[heap[childPosition]]) {
+				++childPosition;
+			}
+			int child = heap[childPosition];
+			if (activities[child]<=activity) { break; }
+			heap[position] = child;
+			positions[child] = position;
+			position = childPosition;
+		}
+		heap[position] = variable;
+		positions[variable] = position;
+	}
+}
@@ -1,128 +1,256 @@
 package sat;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
 
 /**
- * This is a class to get instances of SLiterals from. It manages the creation and retrieval of SLiteral instances.
- * 
+ * This is a class to get SLiterals from. It numbers the variables of a Formula by their names, which is the only
+ * place where names are used, and decides which SLiteral the SATSolver should decide on next.
+ *
  * Class Dependencies:
- * SClause, SLiteral, SATSolver
- * 
+ * SLiteral, SATSolver, SLiteralHeap
+ *
  * @author Kang Yue Sheng Benjamin
  *
  */
 public class SLiteralPool {
-	
-	public HashMap<String, SLiteral> positiveLiteralsHashMap; //A HashMap Containing all the Positive SLiterals with their names as keys
-	public HashMap<String, SLiteral> negativeLiteralsHashMap; //A HashMap Containing all the Negative SLiterals with their names as keys
-	
-	public ArrayList<SLiteral> literalSelectionList; //An ArrayList to store the Sliterals for optimized retrieval of unassigned SLiterals
+
+	public HashMap<String, Integer> variableIndexes; //A HashMap Containing the variable index of every variable with its name as key
+	public ArrayList<String> variableNames; //The name of each variable, indexed by its variable index
+
+	public int[] priorities; //The priority of each SLiteral, indexed by code
+	public int[] addCounts; //The number of clauses each SLiteral is in, indexed by code
+
+	public int[] literalSelectionList; //The codes of the SLiterals in order of priority, for optimized retrieval of unassigned SLiterals
+	public int literalSelectionListSize;
 	public int literalSelectionListOffset;
-	
+
+	public boolean useActivity; //TRUE to select SLiterals by their activity instead of literalSelectionList
+	public SLiteralHeap literalHeap; //A heap of the variables ordered by activity, built by preProcess if useActivity
+	public int[] decisionLiterals; //The code of the SLiteral to decide on for each variable index, built by preProcess
+	public boolean savePhases; //TRUE to replace the SLiteral to decide on with the last SLiteral assigned to TRUE
+	public int numberOfVariables;
+	public byte[] values; //The value of each SLiteral, indexed by code. Owned by the SATSolver, given to preProcess
+	public Random random; //If not null, replaces the priorities in the initial activities and phases of preProcess
+
 	/**
 	 * Default constructor
 	 */
 	public SLiteralPool() {
 		//Initialize internal data structures
-		positiveLiteralsHashMap = new HashMap<String, SLiteral>();
-		negativeLiteralsHashMap = new HashMap<String, SLiteral>();
-		literalSelectionList = new ArrayList<SLiteral>();
+		variableIndexes = new HashMap<String, Integer>();
+		variableNames = new ArrayList<String>();
+		priorities = new int[16];
+		addCounts = new int[16];
+		literalSelectionListSize = 0;
 		literalSelectionListOffset = 0;
+		useActivity = false;
+		savePhases = false;
+		numberOfVariables = 0;
 	}
-	
+
 	/**
-	 * A method to retrieve an instance of a Positive SLiteral represented by its name.
+	 * A method to retrieve the code of a Positive SLiteral represented by its name.
 	 *
 	 * @param s The name of the SLiteral
-	 * @return A Positive SLiteral
+	 * @return The code of a Positive SLiteral
 	 */
-	public SLiteral getPositiveLiteralWithString(String s) {
-		if (positiveLiteralsHashMap.containsKey(s)) { //If the SLiteral has already been made
-			SLiteral literal = positiveLiteralsHashMap.get(s);	
-			return literal;
-		} else { //Else if the SLiteral has not yet been made
-			SLiteral positiveLiteral = new SLiteral( /*isNegative*/ false);
-			SLiteral negativeLiteral = new SLiteral( /*isNegative*/ true);
-			negativeLiteral.setInverseCounterpart(positiveLiteral);
-			positiveLiteral.setInverseCounterpart(negativeLiteral);
-			positiveLiteralsHashMap.put(s, positiveLiteral);
-			negativeLiteralsHashMap.put(s, negativeLiteral);
-			return positiveLiteral;
-		}
+	public int getPositiveLiteralWithString(String s) {
+		return SLiteral.code(getVariableIndex(s), false);
 	}
-	
+
 	/**
-	 * A method to retrieve an instance of a Negative SLiteral represented by its name.
+	 * A method to retrieve the code of a Negative SLiteral represented by its name.
 	 *
 	 * @param s The name of the SLiteral
-	 * @return A Negative SLiteral
+	 * @return The code of a Negative SLiteral
+	 */
+	public int getNegativeLiteralWithString(String s){
+		return SLiteral.code(getVariableIndex(s), true);
+	}
+
+	/**
+	 * Returns the variable index of a variable, giving it the next one if it has not been seen before.
+	 * @param s The name of the variable
+	 * @return
 	 */
-	public SLiteral getNegativeLiteralWithString(String s){
-		if (negativeLiteralsHashMap.containsKey(s)) { //If the SLiteral has already been made
-			SLiteral literal = negativeLiteralsHashMap.get(s);
-			return literal;
-		} else { //Else if the SLiteral has not yet been made
-			SLiteral negativeLiteral = new SLiteral( /*isNegative*/ true);
-			SLiteral positiveLiteral = new SLiteral( /*isNegative*/ false);
-			positiveLiteral.setInverseCounterpart(negativeLiteral);
-			negativeLiteral.setInverseCounterpart(positiveLiteral);
-			positiveLiteralsHashMap.put(s, positiveLiteral);
-			negativeLiteralsHashMap.put(s, negativeLiteral);
-			return negativeLiteral;
+	public int getVariableIndex(String s) {
+		Integer index = variableIndexes.get(s);
+		if (index!=null) { //If the variable has already been seen
+			return index;
 		}
+		int newIndex = numberOfVariables++;
+		variableIndexes.put(s, newIndex);
+		variableNames.add(s);
+		if (2*numberOfVariables>priorities.length) {
+			priorities = Arrays.copyOf(priorities, 2*priorities.length);
+			addCounts = Arrays.copyOf(addCounts, 2*addCounts.length);
+		}
+		return newIndex;
 	}
-	
+
+	/**
+	 * Must be called for each SLiteral of each clause of the Formula, before preProcess
+	 * @param code The SLiteral
+	 * @param priorityIncrement By how much the priority of the SLiteral grows
+	 */
+	public void literalAdded(int code, int priorityIncrement) {
+		priorities[code] += priorityIncrement;
+		++addCounts[code];
+	}
+
 	/**
 	 * Sorts literalSelectionList in descending order by the priority of each SLiteral.
-	 * Replaces the SLiteral in the list with its positive or negative counterpart, depending on which has more priority.
-	 * Assigns all unit literals.
+	 * Puts the positive or negative SLiteral of each variable in the list, depending on which has more priority.
+	 * If applyPureLiteralRule, assigns all pure literals to TRUE in values. This is only sound when no clause will 
+	 * be added later, so a SATSolver used incrementally leaves it off.
+	 * If useActivity, also fills literalHeap, with the order of literalSelectionList breaking ties in activity.
+	 * If random is set, the initial activities and the SLiterals to decide on are picked at random instead, to 
+	 * make SATSolvers that are otherwise alike search differently.
+	 * @param values The value of each SLiteral, indexed by code, with room for every variable
+	 * @param applyPureLiteralRule TRUE to assign the pure literals
 	 */
-	public void preProcess(){ 
-		for (SLiteral literal:positiveLiteralsHashMap.values()) {
-			SLiteral literalInverseCounterpart = literal.inverseCounterpart;
-			
-			if (literalInverseCounterpart.addCount==0) {  //Pure literal rule
-				literal.setEvalutateToTrue(); 
-			} 
-			else if (literal.addCount==0) { //Pure literal rule
-				literalInverseCounterpart.setEvalutateToTrue(); 
+	public void preProcess(byte[] values, boolean applyPureLiteralRule){
+		this.values = values;
+		//Sort keys are the negated priority followed by the position, so that sorting them keeps ties in order
+		long[] sortKeys = new long[numberOfVariables];
+		int[] unsortedList = new int[numberOfVariables];
+		int count = 0;
+		for (Integer index:variableIndexes.values()) {
+			int literal = SLiteral.code(index, false);
+			int literalInverseCounterpart = SLiteral.inverse(literal);
+
+			if (applyPureLiteralRule && addCounts[literalInverseCounterpart]==0) {  //Pure literal rule
+				values[literal] = SLiteral.TRUE;
+				values[literalInverseCounterpart] = SLiteral.FALSE;
 			}
-			else if (literalInverseCounterpart.priority>literal.priority) {
-				literalSelectionList.add(literalInverseCounterpart);
-			} else {
-				literalSelectionList.add(literal);
+			else if (applyPureLiteralRule && addCounts[literal]==0) { //Pure literal rule
+				values[literalInverseCounterpart] = SLiteral.TRUE;
+				values[literal] = SLiteral.FALSE;
+			}
+			else {
+				int selected = priorities[literalInverseCounterpart]>priorities[literal] ? literalInverseCounterpart : literal;
+				sortKeys[count] = ((long)-priorities[selected]<<32) | count;
+				unsortedList[count++] = selected;
+			}
+		}
+		Arrays.sort(sortKeys, 0, count);
+		literalSelectionList = new int[count];
+		for (int i=0; i!=count; ++i) {
+			literalSelectionList[i] = unsortedList[(int)sortKeys[i]];
+		}
+		literalSelectionListSize = count;
+
+		decisionLiterals = new int[numberOfVariables];
+		Arrays.fill(decisionLiterals, SLiteral.NO_LITERAL);
+		for (int i=0; i!=count; ++i) {
+			int l = literalSelectionList[i];
+			decisionLiterals[SLiteral.index(l)] = (random!=null && random.nextBoolean()) ? SLiteral.inverse(l) : l;
+		}
+		if (useActivity) {
+			literalHeap = new SLiteralHeap(numberOfVariables);
+			for (int i=0; i!=count; ++i) {
+				int index = SLiteral.index(literalSelectionList[i]);
+				literalHeap.activities[index] = random!=null ? random.nextDouble() : (double)(count-i)/count; //Less than a bump
+				literalHeap.insert(index);
 			}
 		}
-		Collections.sort(literalSelectionList); //Will be sorted in descending order due to the compareTo() function
 	}
-	
+
+	/**
+	 * Makes the variables seen since preProcess available for deciding on, by appending them to 
+	 * literalSelectionList and inserting them into literalHeap. Pure literals are not assigned, since clauses may 
+	 * still be added.
+	 */
+	public void addNewVariables() {
+		int first = decisionLiterals.length;
+		if (first==numberOfVariables) { return; }
+		decisionLiterals = Arrays.copyOf(decisionLiterals, numberOfVariables);
+		literalSelectionList = Arrays.copyOf(literalSelectionList, literalSelectionListSize+numberOfVariables-first);
+		if (useActivity) {
+			literalHeap.addVariables(numberOfVariables);
+		}
+		for (int index=first; index!=numberOfVariables; ++index) {
+			int literal = SLiteral.code(index, false);
+			int literalInverseCounterpart = SLiteral.inverse(literal);
+			int selected = priorities[literalInverseCounterpart]>priorities[literal] ? literalInverseCounterpart : literal;
+			literalSelectionList[literalSelectionListSize++] = selected;
+			decisionLiterals[index] = selected;
+			if (useActivity) {
+				literalHeap.insert(index);
+			}
+		}
+	}
+
+	/**
+	 * Must be called whenever a SLiteral is unassigned, so that its variable can be selected again.
+	 * If savePhases, the variable will be decided on with the value it had.
+	 * @param l The code of the SLiteral that was TRUE
+	 */
+	public void literalUnassigned(int l) {
+		if (savePhases) {
+			decisionLiterals[SLiteral.index(l)] = l;
+		}
+		if (useActivity) {
+			literalHeap.insert(SLiteral.index(l));
+		}
+	}
+
+	/**
+	 * Increases the activity of a variable, because it took part in a conflict.
+	 * @param index The variable index
+	 */
+	public void bumpActivity(int index) {
+		if (useActivity) {
+			literalHeap.bump(index);
+		}
+	}
+
+	/**
+	 * Decays the activity of every variable, so that recent conflicts weigh more. Called once per conflict.
+	 */
+	public void decayActivities() {
+		if (useActivity) {
+			literalHeap.decay();
+		}
+	}
+
 	/**
 	 * Get an unassigned SLiteral based on its priority. Higher priority SLiterals are return first.
 	 * Recently accessed SLiterals are returned first if they are unassigned.
-	 * @return An unassigned SLiteral
+	 * If useActivity, the unassigned SLiteral whose variable has the highest activity is returned instead.
+	 * @return The code of an unassigned SLiteral, or NO_LITERAL if every SLiteral is assigned
 	 */
-	public SLiteral getUnassignedLiteral(){
-		int literalSelectionListSize = this.literalSelectionList.size();
+	public int getUnassignedLiteral(){
+		if (useActivity) {
+			while (!literalHeap.isEmpty()) {
+				int l = decisionLiterals[literalHeap.removeMax()];
+				if (l!=SLiteral.NO_LITERAL && values[l]==SLiteral.UNASSIGNED) {
+					return l;
+				}
+			}
+			return SLiteral.NO_LITERAL;
+		}
 		int i=0;
 		for (i=literalSelectionListOffset; i!=literalSelectionListSize; ++i) {
-			SLiteral l = literalSelectionList.get(i);
-			if (!l.assigned) {
+			int l = literalSelectionList[i];
+			if (values[l]==SLiteral.UNASSIGNED) {
 				literalSelectionListOffset = i;
-				return l;
+				return decisionLiterals[SLiteral.index(l)];
 			}
 		}
 		for (i=0; i!=literalSelectionListOffset; ++i) {
-			SLiteral l = literalSelectionList.get(i);
-			if (!l.assigned) {
+			int l = literalSelectionList[i];
+			if (values[l]==SLiteral.UNASSIGNED) {
 				literalSelectionListOffset = i;
-				return l;
+				return decisionLiterals[SLiteral.index(l)];
 			}
 		}
-		return null;
+		return SLiteral.NO_LITERAL;
 	}
 
-	
-	
+
+
 }
@@ -0,0 +1,376 @@
+package sat;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import sat.env.Bool;
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PosLiteral;
+
+/**
+ * This is a stochastic local search for a solution of some clauses, which starts from a complete assignment and
+ * flips one variable at a time, picked from a random unsatisfied clause, until every clause is satisfied.
+ * It cannot show that there is no solution, but often finds one much faster than the complete search when there is.
+ * The clauses are kept in a SClauseArena of its own, as SLiteral codes, so that it can run in another thread than
+ * the SATSolver it was built from.
+ *
+ * The break and make count of every variable are updated incrementally on each flip, from the number of TRUE
+ * SLiterals of each clause and the XOR of their codes, which gives the only TRUE SLiteral of a clause without
+ * looking at the clause. The unsatisfied clauses are kept in a flat list, with the position of each in it.
+ *
+ * Some Terminology:
+ * flip			- Changing the value of a variable.
+ * break count	- The number of clauses that become unsatisfied if a variable is flipped, i.e. the clauses in which its
+ * 				  TRUE SLiteral is the only TRUE one.
+ * make count	- The number of unsatisfied clauses that become satisfied if a variable is flipped.
+ * WalkSAT		- Flips a variable of break count 0 if there is one, otherwise a random variable with probability
+ * 				  WALKSAT_NOISE, otherwise the one of lowest break count.
+ * ProbSAT		- Flips a variable picked at random, with a probability that falls polynomially with its break count.
+ * fixed		- A variable assigned on level 0 by the SATSolver, which is never flipped.
+ *
+ * Class Dependencies:
+ * SATSolver, SATSolverOptions, SClauseArena, SIntList, SLiteral, SLiteralPool
+ */
+public class SLocalSearch {
+
+	public static final double WALKSAT_NOISE = 0.567; //The probability of a random flip in WalkSAT
+	public static final double PROBSAT_BASE = 2.3; //ProbSAT picks a variable with probability (PROBSAT_EPSILON+break count)^-PROBSAT_BASE
+	public static final double PROBSAT_EPSILON = 1.0;
+	public static final int PROBSAT_MAXIMUM_BREAK = 64; //Break counts above this are given the probability of this one
+	public static final int CANCEL_CHECK_INTERVAL = 1024; //The number of flips between checks for cancellation
+
+	public SClauseArena arena; //The storage of the clauses
+	public SIntList clauses; //The clause reference of each clause, indexed by clause number
+	public int numberOfVariables;
+	public boolean[] assignment; //TRUE if the positive SLiteral of each variable is TRUE
+	public boolean[] fixed; //TRUE for the variables that may not be flipped
+	public boolean[] bestAssignment; //The assignment with the fewest unsatisfied clauses seen so far
+	public int bestUnsatisfied; //The number of unsatisfied clauses of bestAssignment
+	public long flips; //The number of flips so far
+	public SClauseSharingBuffer clauseSharing; //If not null, the search stops once a SATSolver sharing it has answered
+	private volatile boolean cancelled;
+	private Random random;
+	private int[] trueCounts; //The number of TRUE SLiterals of each clause
+	private int[] trueSums; //The XOR of the codes of the TRUE SLiterals of each clause
+	private SIntList unsatisfied; //The clause numbers of the unsatisfied clauses
+	private int[] unsatisfiedPositions; //The position of each unsatisfied clause in unsatisfied
+	private int[] breaks; //The break count of each variable
+	private int[] makes; //The make count of each variable
+	private int[] occurrenceStarts; //Where the clause numbers of the clauses containing each SLiteral start in occurrences
+	private int[] occurrences;
+	private double[] probabilities; //The ProbSAT weight of each break count
+	private SIntList candidates; //Used to hold the SLiterals that may be flipped in a clause
+
+	/**
+	 * Creates a local search with no clauses, with every variable unfixed and FALSE
+	 * @param numberOfVariables
+	 * @param seed The seed of the random choices
+	 */
+	public SLocalSearch(int numberOfVariables, long seed) {
+		this.arena = new SClauseArena(16);
+		this.clauses = new SIntList();
+		this.numberOfVariables = numberOfVariables;
+		this.assignment = new boolean[numberOfVariables];
+		this.fixed = new boolean[numberOfVariables];
+		this.bestAssignment = new boolean[numberOfVariables];
+		this.bestUnsatisfied = Integer.MAX_VALUE;
+		this.flips = 0;
+		this.clauseSharing = null;
+		this.cancelled = false;
+		this.random = new Random(seed);
+		this.unsatisfied = new SIntList();
+		this.candidates = new SIntList();
+		this.probabilities = new double[PROBSAT_MAXIMUM_BREAK+1];
+		for (int i=0; i!=probabilities.length; ++i) {
+			probabilities[i] = Math.pow(PROBSAT_EPSILON+i, -PROBSAT_BASE);
+		}
+	}
+
+	/**
+	 * Solves a Formula by local search alone.
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param algorithm WALKSAT or PROBSAT
+	 * @param maximumFlips The number of flips after which to give up
+	 * @return An Environment containing a solution to Formula, or null if none was found within maximumFlips,
+	 * which unlike for SATSolver.solve does not mean there is none.
+	 */
+	public static Environment solve(Formula formula, SATSolverOptions.LocalSearch algorithm, long maximumFlips) {
+		SLiteralPool pool = new SLiteralPool();
+		SIntList[] formulaClauses = new SIntList[formula.getSize()];
+		int c = 0;
+		for (Clause clause:formula.getClauses()) {
+			formulaClauses[c] = new SIntList(clause.size());
+			Iterator<Literal> literalIterator = clause.iterator();
+			while (literalIterator.hasNext()) {
+				Literal l = literalIterator.next();
+				String variable = l.getVariable().toString();
+				formulaClauses[c].add(l instanceof PosLiteral ? pool.getPositiveLiteralWithString(variable) : pool.getNegativeLiteralWithString(variable));
+			}
+			if (formulaClauses[c].isEmpty()) { return null; }
+			++c;
+		}
+		SLocalSearch localSearch = new SLocalSearch(pool.numberOfVariables, 0);
+		for (int i=0; i!=c; ++i) {
+			localSearch.addClause(formulaClauses[i].data, formulaClauses[i].size());
+		}
+		if (!localSearch.search(algorithm, maximumFlips)) {
+			return null;
+		}
+		Environment environment = new Environment();
+		for (int index=0; index!=pool.numberOfVariables; ++index) {
+			environment = environment.put(new Variable(pool.variableNames.get(index)), localSearch.assignment[index] ? Bool.TRUE : Bool.FALSE);
+		}
+		return environment;
+	}
+
+	/**
+	 * Adds a clause to satisfy. Must not be called once the search has started.
+	 * @param literalCodes The codes of the SLiterals of the clause
+	 * @param length The number of SLiterals in literalCodes to take, at least 1
+	 */
+	public void addClause(int[] literalCodes, int length) {
+		clauses.add(arena.allocate(literalCodes, length, false));
+	}
+
+	/**
+	 * Fixes a variable to the value that makes an SLiteral TRUE
+	 * @param l The code of the SLiteral
+	 */
+	public void fix(int l) {
+		assignment[SLiteral.index(l)] = !SLiteral.isNegative(l);
+		fixed[SLiteral.index(l)] = true;
+	}
+
+	/**
+	 * Sets the value a variable starts with, unless it is fixed
+	 * @param l The code of the SLiteral to start TRUE
+	 */
+	public void setPhase(int l) {
+		if (!fixed[SLiteral.index(l)]) {
+			assignment[SLiteral.index(l)] = !SLiteral.isNegative(l);
+		}
+	}
+
+	/**
+	 * Returns TRUE if an SLiteral is TRUE in the current assignment
+	 * @param l The code of the SLiteral
+	 * @return
+	 */
+	public boolean isTrue(int l) {
+		return assignment[SLiteral.index(l)]!=SLiteral.isNegative(l);
+	}
+
+	/**
+	 * Stops a search running in another thread, which then returns FALSE
+	 * @param cancel
+	 */
+	public void cancel(boolean cancel) {
+		this.cancelled = cancel;
+	}
+
+	/**
+	 * Flips variables until every clause is satisfied or maximumFlips flips have been made.
+	 * The assignment with the fewest unsatisfied clauses is kept in bestAssignment either way.
+	 * @param algorithm WALKSAT or PROBSAT
+	 * @param maximumFlips
+	 * @return TRUE if the assignment satisfies every clause, otherwise FALSE.
+	 */
+	public boolean search(SATSolverOptions.LocalSearch algorithm, long maximumFlips) {
+		initialize();
+		long lastFlip = flips+maximumFlips;
+		while (true) {
+			if (unsatisfied.size()<bestUnsatisfied) {
+				bestUnsatisfied = unsatisfied.size();
+				System.arraycopy(assignment, 0, bestAssignment, 0, numberOfVariables);
+			}
+			if (unsatisfied.isEmpty()) {
+				return true;
+			}
+			if (flips==lastFlip) {
+				return false;
+			}
+			if (flips%CANCEL_CHECK_INTERVAL==0 && (cancelled || (clauseSharing!=null && clauseSharing.isFinished()))) {
+				return false;
+			}
+			int c = unsatisfied.get(random.nextInt(unsatisfied.size()));
+			int l = algorithm==SATSolverOptions.LocalSearch.WALKSAT ? pickWalkSAT(clauses.get(c)) : pickProbSAT(clauses.get(c));
+			if (l==SLiteral.NO_LITERAL) { //Every SLiteral of the clause is fixed FALSE, so no flip can help
+				return false;
+			}
+			flip(SLiteral.index(l));
+			++flips;
+		}
+	}
+
+	/**
+	 * Computes the TRUE SLiterals of every clause, the unsatisfied clauses and the break and make counts from the
+	 * current assignment, building the occurrence lists first if needed.
+	 */
+	private void initialize() {
+		int numberOfClauses = clauses.size();
+		if (occurrenceStarts==null) {
+			occurrenceStarts = new int[2*numberOfVariables+1];
+			for (int c=0; c!=numberOfClauses; ++c) {
+				int ref = clauses.get(c);
+				for (int i=0; i!=arena.clauseSize(ref); ++i) {
+					++occurrenceStarts[arena.literal(ref, i)+1];
+				}
+			}
+			for (int code=0; code!=2*numberOfVariables; ++code) {
+				occurrenceStarts[code+1] += occurrenceStarts[code];
+			}
+			occurrences = new int[occurrenceStarts[2*numberOfVariables]];
+			int[] next = occurrenceStarts.clone();
+			for (int c=0; c!=numberOfClauses; ++c) {
+				int ref = clauses.get(c);
+				for (int i=0; i!=arena.clauseSize(ref); ++i) {
+					occurrences[next[arena.literal(ref, i)]++] = c;
+				}
+			}
+		}
+		trueCounts = new int[numberOfClauses];
+		trueSums = new int[numberOfClauses];
+		unsatisfiedPositions = new int[numberOfClauses];
+		breaks = new int[numberOfVariables];
+		makes = new int[numberOfVariables];
+		unsatisfied.clear();
+		for (int c=0; c!=numberOfClauses; ++c) {
+			int ref = clauses.get(c);
+			int size = arena.clauseSize(ref);
+			for (int i=0; i!=size; ++i) {
+				int l = arena.literal(ref, i);
+				if (isTrue(l)) {
+					++trueCounts[c];
+					trueSums[c] ^= l;
+				}
+			}
+			if (trueCounts[c]==0) {
+				unsatisfiedPositions[c] = unsatisfied.size();
+				unsatisfied.add(c);
+				for (int i=0; i!=size; ++i) {
+					++makes[SLiteral.index(arena.literal(ref, i))];
+				}
+			} else if (trueCounts[c]==1) {
+				++breaks[SLiteral.index(trueSums[c])];
+			}
+		}
+	}
+
+	/**
+	 * Flips a variable, updating the counts of every clause it is in
+	 * @param index The variable index
+	 */
+	private void flip(int index) {
+		int becomesTrue = SLiteral.code(index, assignment[index]);
+		int becomesFalse = SLiteral.inverse(becomesTrue);
+		assignment[index] = !assignment[index];
+		for (int i=occurrenceStarts[becomesTrue]; i!=occurrenceStarts[becomesTrue+1]; ++i) {
+			int c = occurrences[i];
+			int trueCount = ++trueCounts[c];
+			if (trueCount==1) { //Was unsatisfied
+				removeUnsatisfied(c);
+				int ref = clauses.get(c);
+				for (int k=0; k!=arena.clauseSize(ref); ++k) {
+					--makes[SLiteral.index(arena.literal(ref, k))];
+				}
+				++breaks[index];
+			} else if (trueCount==2) { //The other TRUE SLiteral is no longer the only one
+				--breaks[SLiteral.index(trueSums[c])];
+			}
+			trueSums[c] ^= becomesTrue;
+		}
+		for (int i=occurrenceStarts[becomesFalse]; i!=occurrenceStarts[becomesFalse+1]; ++i) {
+			int c = occurrences[i];
+			int trueCount = --trueCounts[c];
+			trueSums[c] ^= becomesFalse;
+			if (trueCount==0) { //Becomes unsatisfied
+				unsatisfiedPositions[c] = unsatisfied.size();
+				unsatisfied.add(c);
+				int ref = clauses.get(c);
+				for (int k=0; k!=arena.clauseSize(ref); ++k) {
+					++makes[SLiteral.index(arena.literal(ref, k))];
+				}
+				--breaks[index];
+			} else if (trueCount==1) { //The remaining TRUE SLiteral is now the only one
+				++breaks[SLiteral.index(trueSums[c])];
+			}
+		}
+	}
+
+	/**
+	 * Removes a clause from unsatisfied, moving the last one into its place
+	 * @param c The clause number
+	 */
+	private void removeUnsatisfied(int c) {
+		int last = unsatisfied.removeLast();
+		if (last!=c) {
+			int position = unsatisfiedPositions[c];
+			unsatisfied.set(position, last);
+			unsatisfiedPositions[last] = position;
+		}
+	}
+
+	/**
+	 * Collects the SLiterals of an unsatisfied clause whose variable may be flipped into candidates
+	 * @param ref The clause reference of the clause
+	 */
+	private void collectCandidates(int ref) {
+		candidates.clear();
+		for (int i=0; i!=arena.clauseSize(ref); ++i) {
+			int l = arena.literal(ref, i);
+			if (!fixed[SLiteral.index(l)]) {
+				candidates.add(l);
+			}
+		}
+	}
+
+	/**
+	 * Picks the SLiteral to flip in an unsatisfied clause the way WalkSAT does, breaking ties in break count by
+	 * the highest make count
+	 * @param ref The clause reference of the clause
+	 * @return The code of the SLiteral, or NO_LITERAL if every SLiteral of the clause is fixed
+	 */
+	private int pickWalkSAT(int ref) {
+		collectCandidates(ref);
+		if (candidates.isEmpty()) { return SLiteral.NO_LITERAL; }
+		int best = SLiteral.NO_LITERAL;
+		for (int i=0; i!=candidates.size(); ++i) {
+			int l = candidates.get(i);
+			int index = SLiteral.index(l);
+			if (best==SLiteral.NO_LITERAL || breaks[index]<breaks[SLiteral.index(best)]
+					|| (breaks[index]==breaks[SLiteral.index(best)] && makes[index]>makes[SLiteral.index(best)])) {
+				best = l;
+			}
+		}
+		if (breaks[SLiteral.index(best)]!=0 && random.nextDouble()<WALKSAT_NOISE) {
+			return candidates.get(random.nextInt(candidates.size()));
+		}
+		return best;
+	}
+
+	/**
+	 * Picks the SLiteral to flip in an unsatisfied clause the way ProbSAT does
+	 * @param ref The clause reference of the clause
+	 * @return The code of the SLiteral, or NO_LITERAL if every SLiteral of the clause is fixed
+	 */
+	private int pickProbSAT(int ref) {
+		collectCandidates(ref);
+		if (candidates.isEmpty()) { return SLiteral.NO_LITERAL; }
+		double sum = 0;
+		for (int i=0; i!=candidates.size(); ++i) {
+			sum += probabilities[Math.min(breaks[SLiteral.index(candidates.get(i))], PROBSAT_MAXIMUM_BREAK)];
+		}
+		double r = random.nextDouble()*sum;
+		for (int i=0; i!=candidates.size()-1; ++i) {
+			r -= probabilities[Math.min(breaks[SLiteral.index(candidates.get(i))], PROBSAT_MAXIMUM_BREAK)];
+			if (r<0) {
+				return candidates.get(i);
+			}
+		}
+		return candidates.last();
+	}
+}
@@ -0,0 +1,61 @@
+package sat;
+
+/**
+ * A SRestartPolicy that restarts after a number of conflicts following the Luby sequence 
+ * (1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...), multiplied by a unit number of conflicts.
+ * 
+ * Class Dependencies:
+ * SRestartPolicy
+ */
+public class SLubyRestartPolicy implements SRestartPolicy {
+	
+	public static final int DEFAULT_UNIT = 100; //The number of conflicts that one step of the sequence stands for
+	
+	public int unit;
+	public int restarts; //The number of restarts so far, which is the position in the Luby sequence
+	public long conflictsSinceRestart;
+	public long conflictLimit; //The number of conflicts before the next restart
+	
+	public SLubyRestartPolicy() {
+		this(DEFAULT_UNIT);
+	}
+	
+	public SLubyRestartPolicy(int unit) {
+		this.unit = unit;
+		this.restarts = 0;
+		this.conflictsSinceRestart = 0;
+		this.conflictLimit = unit * luby(0);
+	}
+
+	@Override
+	public boolean conflictOccurred(int learnedClauseLBD, int numberOfAssignedLiterals) {
+		return ++conflictsSinceRestart>=conflictLimit;
+	}
+
+	@Override
+	public void restarted() {
+		conflictsSinceRestart = 0;
+		conflictLimit = unit * luby(++restarts);
+	}
+	
+	/**
+	 * Returns the i-th element (starting from 0) of the Luby sequence
+	 * @param i
+	 * @return
+	 */
+	public static long luby(int i) {
+		//Find the finite subsequence that contains index i, and the size of that subsequence
+		int size = 1;
+		int sequence = 0;
+		while (size<i+1) {
+			++sequence;
+			size = 2*size+1;
+		}
+		while (size-1!=i) {
+			size = (size-1)>>1;
+			--sequence;
+			i = i%size;
+		}
+		return 1L<<sequence;
+	}
+}
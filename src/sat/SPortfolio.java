@@ -0,0 +1,110 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sat.env.Environment;
+import sat.formula.Formula;
+
+/**
+ * This is a class that solves a Formula with several SATSolvers at once, one per thread, each configured to search
+ * differently. They share their short learned clauses of low LBD through a SClauseSharingBuffer, so that what one
+ * learns can prune the search of the others. The first to finish answers for all, and the others stop as if cancelled.
+ *
+ * Some Terminology:
+ * portfolio		- A set of differently configured solvers run on the same problem, as no one configuration is
+ * 				  best on every problem.
+ * worker			- One SATSolver of the portfolio, with its own clauses, assignment and learned clauses.
+ *
+ * Class Dependencies:
+ * SATSolver, SATSolverOptions, SClauseSharingBuffer
+ */
+public class SPortfolio {
+
+	public static final long LOCAL_SEARCH_FLIPS = 10000000; //The number of flips of the worker that runs a local search first
+
+	/**
+	 * Only static methods, so there are no instances of this class
+	 */
+	private SPortfolio() {
+	}
+
+	/**
+	 * Solves a Formula with numberOfThreads workers, returning the answer of the first to finish.
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param numberOfThreads The number of workers, at least 1
+	 * @return An Environment containing a possible solution to Formula, or null if there is none.
+	 * @throws SATSolver.UnknownResultException If the thread is interrupted before a worker answers, which leaves
+	 * it interrupted
+	 */
+	public static Environment solve(final Formula formula, int numberOfThreads) {
+		final SClauseSharingBuffer clauseSharing = new SClauseSharingBuffer(SClauseSharingBuffer.DEFAULT_CAPACITY);
+		final List<SATSolver> workers = new ArrayList<SATSolver>();
+		for (int i=0; i!=Math.max(numberOfThreads, 1); ++i) {
+			SATSolver worker = new SATSolver(createOptions(i));
+			worker.shareClauses(clauseSharing, i);
+			workers.add(worker);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+		ExecutorCompletionService<Environment> completionService = new ExecutorCompletionService<Environment>(executor);
+		List<Future<Environment>> futures = new ArrayList<Future<Environment>>();
+		for (final SATSolver worker:workers) {
+			futures.add(completionService.submit(new Callable<Environment>() {
+				public Environment call() {
+					//Every worker adds the clauses in the same order, so that they all number the variables alike
+					worker.addFormula(formula);
+					return worker.solve();
+				}
+			}));
+		}
+		try {
+			//The workers that lost the race to answer finish as cancelled, with status UNKNOWN, and are skipped
+			for (int i=0; i!=workers.size(); ++i) {
+				Future<Environment> future = completionService.take();
+				Environment environment = future.get();
+				if (workers.get(futures.indexOf(future)).status!=SATSolver.Status.UNKNOWN) {
+					return environment;
+				}
+			}
+			throw new SATSolver.UnknownResultException("Every worker stopped before finding out whether there is a solution");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SATSolver.UnknownResultException("Interrupted while waiting for a worker to answer");
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (SATSolver worker:workers) {
+				worker.cancel(true);
+			}
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the SATSolverOptions of a worker. The first four differ in their decision heuristic, restart policy
+	 * and phase saving, and the rest repeat them with their own random seed. Every fourth worker runs a ProbSAT 
+	 * local search before its complete search, which finds many solutions quickly and otherwise seeds its phases.
+	 * @param worker The number of the worker
+	 * @return
+	 */
+	public static SATSolverOptions createOptions(int worker) {
+		SATSolverOptions options = new SATSolverOptions();
+		options.learnClauses = true;
+		options.decisionHeuristic = worker%4==2 ? SATSolverOptions.DecisionHeuristic.STATIC : SATSolverOptions.DecisionHeuristic.ACTIVITY;
+		options.restartPolicy = worker%2==0 ? SATSolverOptions.RestartPolicy.GLUCOSE : SATSolverOptions.RestartPolicy.LUBY;
+		options.savePhases = worker%4!=3;
+		options.randomSeed = worker<4 ? 0 : worker;
+		if (worker%4==3) {
+			options.localSearch = SATSolverOptions.LocalSearch.PROBSAT;
+			options.localSearchFlips = LOCAL_SEARCH_FLIPS;
+		}
+		return options;
+	}
+}
@@ -0,0 +1,688 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This is a class to simplify the clauses of a Formula before the SATSolver searches, in the way of SatELite.
+ * Clauses are kept with their SLiterals sorted by code, together with a list of the clauses each variable occurs in.
+ * Then the clauses are simplified, which repeats these until nothing changes:
+ * - SLiterals of unit clauses are assigned, removing the clauses they satisfy and the SLiterals they falsify.
+ * - Clauses subsumed by another clause are removed (backward subsumption).
+ * - A SLiteral is removed from a clause when resolving it with another clause gives a subset of it
+ *   (self-subsuming strengthening).
+ * After that, each of these runs once, in order, simplifying the clauses again after every change:
+ * - SLiterals that imply each other through binary clauses are replaced by one of them (equivalent literal
+ *   substitution), found as the strongly connected components of the binary implication graph.
+ * - Each SLiteral of a binary clause is assumed and propagated (failed literal probing). If that gives a conflict,
+ *   its inverse counterpart is assigned. SLiterals implied by both values of a variable are assigned too.
+ * - Variables are eliminated by replacing their clauses with all the resolvents on them, if that does not add
+ *   more than GROWTH_LIMIT clauses (bounded variable elimination).
+ * Equivalences and failed SLiterals that only show up after a later step are left to the search.
+ * The clauses of eliminated and substituted variables are kept on eliminationStack, so that extendModel can give 
+ * each of them a value that satisfies the original clauses, once the SATSolver has found a solution.
+ *
+ * Some Terminology:
+ * occurrences		- The clauses that contain a variable, either as a positive or a negative SLiteral.
+ * signature		- A 64 bit summary of the variables of a clause. If the signature of C has a bit that the
+ * 				  signature of D does not, C cannot be a subset of D.
+ * resolvent		- The clause made of every SLiteral of two clauses except the variable they disagree on.
+ * binary implication graph	- A graph with an edge from the inverse counterpart of each SLiteral of a binary clause
+ * 				  to the other SLiteral, as assigning it FALSE forces the other to TRUE.
+ *
+ * Class Dependencies:
+ * SATSolver, SLiteral, SIntList
+ */
+public class SPreprocessor {
+
+	public static final int GROWTH_LIMIT = 0; //How many more clauses eliminating a variable may leave
+	public static final int RESOLVENT_SIZE_LIMIT = 20; //Variables with resolvents longer than this are not eliminated
+	public static final int OCCURRENCE_LIMIT = 1000; //Variables in more clauses than this are skipped by subsumption
+	public static final long PROBE_LIMIT = 20000000; //The number of SLiterals failed literal probing may look at
+	private static final int NOT_SUBSUMED = -2; //Returned by subsumes() if neither subsumption nor strengthening applies
+	private static final int SUBSUMED = -1; //Returned by subsumes() if the first clause is a subset of the second
+
+	public int numberOfVariables;
+	public ArrayList<int[]> clauses; //The SLiterals of each clause sorted by code, or null if it has been removed
+	public long[] signatures; //The signature of each clause
+	public SIntList[] occurrences; //The clauses each variable occurs in
+	public byte[] values; //The value of each SLiteral assigned by unit clauses, indexed by code
+	public boolean[] eliminated; //TRUE for each eliminated variable
+	public SIntList eliminationStack; //The removed clauses of eliminated variables, each followed by its size
+	public boolean emptyClauseFound;
+	public int eliminatedVariables; //The number of variables eliminated so far
+	public int subsumedClauses; //The number of clauses removed by subsumption so far
+	public int strengthenedClauses; //The number of SLiterals removed by self-subsuming strengthening so far
+	public int substitutedVariables; //The number of variables replaced by an equivalent SLiteral so far
+	public int failedLiterals; //The number of SLiterals found by probing to lead to a conflict so far
+	public int necessaryAssignments; //The number of SLiterals found by probing to be implied by both values so far
+	private SIntList unitQueue; //Assigned SLiterals whose clauses are yet to be simplified
+	private SIntList subsumptionQueue; //Clauses yet to be checked for subsuming others
+	private boolean[] inSubsumptionQueue;
+
+	/**
+	 * Default constructor, for a SPreprocessor with no clauses
+	 */
+	public SPreprocessor() {
+		this.numberOfVariables = 0;
+		this.clauses = new ArrayList<int[]>();
+		this.signatures = new long[16];
+		this.occurrences = new SIntList[0];
+		this.values = new byte[0];
+		this.eliminated = new boolean[0];
+		this.eliminationStack = new SIntList();
+		this.emptyClauseFound = false;
+		this.unitQueue = new SIntList();
+		this.subsumptionQueue = new SIntList();
+		this.inSubsumptionQueue = new boolean[16];
+	}
+
+	/**
+	 * Adds a clause of the Formula. Duplicate SLiterals are dropped, and tautologies are ignored.
+	 * @param literalCodes The codes of the SLiterals of the clause
+	 * @param length The number of SLiterals in literalCodes to take
+	 */
+	public void addClause(int[] literalCodes, int length) {
+		int[] literals = Arrays.copyOf(literalCodes, length);
+		Arrays.sort(literals);
+		if (length!=0 && SLiteral.index(literals[length-1])>=numberOfVariables) {
+			addVariables(SLiteral.index(literals[length-1])+1);
+		}
+		int size = 0;
+		for (int i=0; i!=length; ++i) {
+			if (size!=0 && literals[size-1]==literals[i]) { continue; }
+			if (size!=0 && literals[size-1]==SLiteral.inverse(literals[i])) { return; } //Always TRUE
+			literals[size++] = literals[i];
+		}
+		if (size==0) {
+			emptyClauseFound = true;
+		} else if (size==1) {
+			enqueueUnit(literals[0]);
+		} else {
+			storeClause(size==length ? literals : Arrays.copyOf(literals, size));
+		}
+	}
+
+	/**
+	 * Simplifies the clauses added so far.
+	 * @return FALSE if the clauses have been found to be unsatisfiable, otherwise TRUE
+	 */
+	public boolean preprocess() {
+		if (emptyClauseFound || !simplify()) {
+			return false;
+		}
+		if (!substituteEquivalentLiterals() || !simplify() || !probeLiterals()) {
+			return false;
+		}
+
+		//Try the variables that are cheapest to eliminate first
+		long[] sortKeys = new long[numberOfVariables];
+		for (int i=0; i!=numberOfVariables; ++i) {
+			sortKeys[i] = ((long)occurrences[i].size()<<32) | i;
+		}
+		Arrays.sort(sortKeys);
+		for (int i=0; i!=numberOfVariables; ++i) {
+			int index = (int)sortKeys[i];
+			if (!eliminated[index] && values[SLiteral.code(index, false)]==SLiteral.UNASSIGNED) {
+				eliminateVariable(index);
+				if (emptyClauseFound || !simplify()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the clauses left after preprocess, with a unit clause for each SLiteral assigned by unit clauses
+	 * @return
+	 */
+	public ArrayList<int[]> remainingClauses() {
+		ArrayList<int[]> remaining = new ArrayList<int[]>();
+		for (int code=0; code!=2*numberOfVariables; ++code) {
+			if (values[code]==SLiteral.TRUE) {
+				remaining.add(new int[] {code});
+			}
+		}
+		for (int[] c:clauses) {
+			if (c!=null) {
+				remaining.add(c);
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Assigns every eliminated variable so that the removed clauses are satisfied.
+	 * The clauses are visited from the last one removed, and the SLiteral of the eliminated variable is set
+	 * to TRUE in every clause that is still FALSE.
+	 * @param modelValues The values of a solution of the remaining clauses, indexed by code
+	 */
+	public void extendModel(byte[] modelValues) {
+		int i = eliminationStack.size()-1;
+		while (i>=0) {
+			int size = eliminationStack.get(i);
+			int start = i-size;
+			boolean satisfied = false;
+			for (int k=start+1; k!=i; ++k) { //The first SLiteral is of the eliminated variable
+				if (modelValues[eliminationStack.get(k)]==SLiteral.TRUE) {
+					satisfied = true;
+					break;
+				}
+			}
+			if (!satisfied) {
+				int pivot = eliminationStack.get(start);
+				modelValues[pivot] = SLiteral.TRUE;
+				modelValues[SLiteral.inverse(pivot)] = SLiteral.FALSE;
+			}
+			i = start-1;
+		}
+	}
+
+	/**
+	 * Applies unit clauses and subsumption until neither changes anything
+	 * @return FALSE if an empty clause has been found, otherwise TRUE
+	 */
+	private boolean simplify() {
+		while (!unitQueue.isEmpty() || !subsumptionQueue.isEmpty()) {
+			while (!unitQueue.isEmpty()) {
+				int l = unitQueue.removeLast();
+				SIntList occurrenceList = occurrences[SLiteral.index(l)];
+				while (!occurrenceList.isEmpty()) {
+					int c = occurrenceList.last();
+					if (Arrays.binarySearch(clauses.get(c), l)>=0) {
+						removeClause(c);
+					} else {
+						strengthenClause(c, SLiteral.inverse(l));
+					}
+				}
+				if (emptyClauseFound) { return false; }
+			}
+			while (unitQueue.isEmpty() && !subsumptionQueue.isEmpty()) {
+				int c = subsumptionQueue.removeLast();
+				inSubsumptionQueue[c] = false;
+				if (clauses.get(c)!=null) {
+					subsumeWithClause(c);
+				}
+				if (emptyClauseFound) { return false; }
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the strongly connected components of the binary implication graph with Tarjan's algorithm, and 
+	 * replaces every variable in each component by the SLiteral of smallest code in it.
+	 * As the graph is symmetric, the component of the inverse counterparts is replaced by its inverse counterpart.
+	 * @return FALSE if a SLiteral is equivalent to its inverse counterpart, otherwise TRUE
+	 */
+	private boolean substituteEquivalentLiterals() {
+		int numberOfLiterals = 2*numberOfVariables;
+		SIntList[] implications = new SIntList[numberOfLiterals];
+		for (int code=0; code!=numberOfLiterals; ++code) {
+			implications[code] = new SIntList();
+		}
+		for (int[] c:clauses) {
+			if (c!=null && c.length==2) {
+				implications[SLiteral.inverse(c[0])].add(c[1]);
+				implications[SLiteral.inverse(c[1])].add(c[0]);
+			}
+		}
+
+		//Tarjan's algorithm, with an explicit stack of the SLiterals being visited and their next edge
+		int[] order = new int[numberOfLiterals]; //The visiting order of each SLiteral plus 1, 0 if not visited yet
+		int[] lowLinks = new int[numberOfLiterals];
+		int[] representatives = new int[numberOfLiterals];
+		boolean[] onStack = new boolean[numberOfLiterals];
+		SIntList stack = new SIntList();
+		SIntList visiting = new SIntList();
+		SIntList nextEdges = new SIntList();
+		int visited = 0;
+		boolean substitutionFound = false;
+		for (int root=0; root!=numberOfLiterals; ++root) {
+			if (order[root]!=0) { continue; }
+			representatives[root] = root;
+			if (implications[root].isEmpty()) { continue; }
+			order[root] = lowLinks[root] = ++visited;
+			stack.add(root);
+			onStack[root] = true;
+			visiting.add(root);
+			nextEdges.add(0);
+			while (!visiting.isEmpty()) {
+				int l = visiting.last();
+				int edge = nextEdges.last();
+				if (edge!=implications[l].size()) {
+					nextEdges.set(nextEdges.size()-1, edge+1);
+					int next = implications[l].get(edge);
+					if (order[next]==0) {
+						order[next] = lowLinks[next] = ++visited;
+						stack.add(next);
+						onStack[next] = true;
+						visiting.add(next);
+						nextEdges.add(0);
+					} else if (onStack[next]) {
+						lowLinks[l] = Math.min(lowLinks[l], order[next]);
+					}
+					continue;
+				}
+				visiting.removeLast();
+				nextEdges.removeLast();
+				if (!visiting.isEmpty()) {
+					int parent = visiting.last();
+					lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[l]);
+				}
+				if (lowLinks[l]!=order[l]) { continue; }
+
+				//l is the first SLiteral visited of a component, which is on the stack above it
+				int start = stack.size()-1;
+				while (stack.get(start)!=l) { --start; }
+				int smallest = l;
+				for (int i=start; i!=stack.size(); ++i) {
+					smallest = Math.min(smallest, stack.get(i));
+				}
+				for (int i=start; i!=stack.size(); ++i) {
+					int member = stack.get(i);
+					onStack[member] = false;
+					representatives[member] = smallest;
+					substitutionFound |= (member!=smallest);
+				}
+				for (int i=start; i!=stack.size(); ++i) {
+					int member = stack.get(i);
+					if (representatives[SLiteral.inverse(member)]==smallest && order[SLiteral.inverse(member)]!=0 
+							&& !onStack[SLiteral.inverse(member)]) {
+						emptyClauseFound = true; //Both values of a variable imply each other
+						return false;
+					}
+				}
+				stack.shrink(start);
+			}
+		}
+		if (!substitutionFound) { return true; }
+
+		//Replace the variables that are not their own representative
+		int[] mapped = new int[16];
+		for (int index=0; index!=numberOfVariables; ++index) {
+			int positive = SLiteral.code(index, false);
+			int representative = representatives[positive];
+			if (representative==positive) { continue; }
+			int[] occurrenceClauses = occurrences[index].toArray();
+			for (int c:occurrenceClauses) {
+				int[] clause = clauses.get(c);
+				if (mapped.length<clause.length) {
+					mapped = new int[clause.length];
+				}
+				for (int i=0; i!=clause.length; ++i) {
+					mapped[i] = representatives[clause[i]];
+				}
+				removeClause(c);
+				addClause(mapped, clause.length);
+			}
+			eliminationStack.add(positive);
+			eliminationStack.add(SLiteral.inverse(representative));
+			eliminationStack.add(2);
+			eliminationStack.add(SLiteral.inverse(positive));
+			eliminationStack.add(representative);
+			eliminationStack.add(2);
+			eliminated[index] = true;
+			++substitutedVariables;
+		}
+		return !emptyClauseFound;
+	}
+
+	/**
+	 * Probes both SLiterals of each variable that is in a binary clause, until PROBE_LIMIT is used up.
+	 * A SLiteral whose probe ends in a conflict is failed, so its inverse counterpart is assigned.
+	 * A SLiteral implied by the probes of both SLiterals of a variable is assigned.
+	 * @return FALSE if the clauses have been found to be unsatisfiable, otherwise TRUE
+	 */
+	private boolean probeLiterals() {
+		byte[] probeValues = new byte[2*numberOfVariables];
+		int[] marks = new int[2*numberOfVariables]; //The variable index plus 1 of the last probe that implied each SLiteral
+		SIntList trail = new SIntList();
+		long[] budget = new long[] {PROBE_LIMIT};
+		for (int index=0; index!=numberOfVariables && budget[0]>0; ++index) {
+			int positive = SLiteral.code(index, false);
+			if (eliminated[index] || values[positive]!=SLiteral.UNASSIGNED || !isInBinaryClause(index)) { continue; }
+			
+			if (!probe(positive, probeValues, trail, budget)) {
+				++failedLiterals;
+				enqueueUnit(SLiteral.inverse(positive));
+			} else {
+				for (int i=1; i<trail.size(); ++i) {
+					marks[trail.get(i)] = index+1;
+				}
+				if (!probe(SLiteral.inverse(positive), probeValues, trail, budget)) {
+					++failedLiterals;
+					enqueueUnit(positive);
+				} else {
+					for (int i=1; i<trail.size(); ++i) {
+						if (marks[trail.get(i)]==index+1) {
+							++necessaryAssignments;
+							enqueueUnit(trail.get(i));
+						}
+					}
+				}
+			}
+			if (emptyClauseFound || !simplify()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Assigns a SLiteral in probeValues and propagates the clauses of every SLiteral it implies
+	 * @param l The code of the SLiteral
+	 * @param probeValues All UNASSIGNED, and left that way
+	 * @param trail Left with the SLiterals assigned, l first
+	 * @param budget The number of SLiterals that may still be looked at, decreased by the number looked at
+	 * @return FALSE if a clause became FALSE, otherwise TRUE
+	 */
+	private boolean probe(int l, byte[] probeValues, SIntList trail, long[] budget) {
+		trail.clear();
+		trail.add(l);
+		probeValues[l] = SLiteral.TRUE;
+		probeValues[SLiteral.inverse(l)] = SLiteral.FALSE;
+		boolean conflict = false;
+		for (int head=0; head!=trail.size() && !conflict; ++head) {
+			int falseLiteral = SLiteral.inverse(trail.get(head));
+			SIntList occurrenceList = occurrences[SLiteral.index(falseLiteral)];
+			for (int k=0; k!=occurrenceList.size() && !conflict; ++k) {
+				int[] clause = clauses.get(occurrenceList.get(k));
+				budget[0] -= clause.length;
+				int unassigned = SLiteral.NO_LITERAL;
+				int unassignedCount = 0;
+				boolean satisfied = false;
+				for (int m:clause) {
+					if (probeValues[m]==SLiteral.TRUE) {
+						satisfied = true;
+						break;
+					} else if (probeValues[m]==SLiteral.UNASSIGNED) {
+						unassigned = m;
+						++unassignedCount;
+					}
+				}
+				if (satisfied || unassignedCount>1) { continue; }
+				if (unassignedCount==0) {
+					conflict = true;
+				} else {
+					probeValues[unassigned] = SLiteral.TRUE;
+					probeValues[SLiteral.inverse(unassigned)] = SLiteral.FALSE;
+					trail.add(unassigned);
+				}
+			}
+		}
+		for (int i=0; i!=trail.size(); ++i) {
+			probeValues[trail.get(i)] = probeValues[SLiteral.inverse(trail.get(i))] = SLiteral.UNASSIGNED;
+		}
+		return !conflict;
+	}
+
+	private boolean isInBinaryClause(int index) {
+		SIntList occurrenceList = occurrences[index];
+		for (int i=0; i!=occurrenceList.size(); ++i) {
+			if (clauses.get(occurrenceList.get(i)).length==2) { return true; }
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the clauses subsumed by a clause, and strengthens the clauses it can be resolved with into a subset.
+	 * Only the occurrences of the variable of the clause with the fewest occurrences are looked through,
+	 * as every such clause must contain it.
+	 * @param c
+	 */
+	private void subsumeWithClause(int c) {
+		int[] clause = clauses.get(c);
+		int best = SLiteral.index(clause[0]);
+		for (int i=1; i!=clause.length; ++i) {
+			int index = SLiteral.index(clause[i]);
+			if (occurrences[index].size()<occurrences[best].size()) {
+				best = index;
+			}
+		}
+		SIntList occurrenceList = occurrences[best];
+		if (occurrenceList.size()>OCCURRENCE_LIMIT) { return; }
+		long signature = signatures[c];
+		int[] candidates = occurrenceList.toArray(); //occurrenceList changes as clauses are removed
+		for (int d:candidates) {
+			int[] other = clauses.get(d);
+			if (d==c || other==null || other.length<clause.length || (signature&~signatures[d])!=0) { continue; }
+			int result = subsumes(clause, other);
+			if (result==SUBSUMED) {
+				removeClause(d);
+				++subsumedClauses;
+			} else if (result!=NOT_SUBSUMED) {
+				strengthenClause(d, result);
+				++strengthenedClauses;
+				if (emptyClauseFound) { return; }
+				if (clauses.get(c)==null) { return; } //Removed by a unit clause found by strengthening
+			}
+		}
+	}
+
+	/**
+	 * Checks whether clause is a subset of other, or would be with one of its SLiterals inverted.
+	 * Both clauses must be sorted by code, so that the SLiterals of a variable are next to each other.
+	 * @param clause
+	 * @param other
+	 * @return SUBSUMED, NOT_SUBSUMED, or the SLiteral of other that can be removed from it
+	 */
+	private static int subsumes(int[] clause, int[] other) {
+		int removable = SUBSUMED;
+		int j = 0;
+		for (int i=0; i!=clause.length; ++i) {
+			int index = SLiteral.index(clause[i]);
+			while (j!=other.length && SLiteral.index(other[j])<index) { ++j; }
+			if (j==other.length || SLiteral.index(other[j])!=index) { return NOT_SUBSUMED; }
+			if (other[j]!=clause[i]) {
+				if (removable!=SUBSUMED) { return NOT_SUBSUMED; }
+				removable = other[j];
+			}
+			++j;
+		}
+		return removable;
+	}
+
+	/**
+	 * Replaces the clauses of a variable by their resolvents on it, unless there would be more than
+	 * GROWTH_LIMIT more clauses, or a resolvent would be longer than RESOLVENT_SIZE_LIMIT.
+	 * @param index The variable index
+	 */
+	private void eliminateVariable(int index) {
+		int positive = SLiteral.code(index, false);
+		SIntList positiveClauses = new SIntList();
+		SIntList negativeClauses = new SIntList();
+		SIntList occurrenceList = occurrences[index];
+		for (int i=0; i!=occurrenceList.size(); ++i) {
+			int c = occurrenceList.get(i);
+			if (Arrays.binarySearch(clauses.get(c), positive)>=0) {
+				positiveClauses.add(c);
+			} else {
+				negativeClauses.add(c);
+			}
+		}
+
+		//Count the resolvents first, giving up as soon as there are too many
+		int limit = positiveClauses.size()+negativeClauses.size()+GROWTH_LIMIT;
+		int resolventCount = 0;
+		int[] buffer = new int[16];
+		for (int i=0; i!=positiveClauses.size(); ++i) {
+			for (int j=0; j!=negativeClauses.size(); ++j) {
+				int[] p = clauses.get(positiveClauses.get(i));
+				int[] n = clauses.get(negativeClauses.get(j));
+				if (buffer.length<p.length+n.length) {
+					buffer = new int[p.length+n.length];
+				}
+				int size = resolve(p, n, index, buffer);
+				if (size<0) { continue; } //Tautology
+				if (++resolventCount>limit || size>RESOLVENT_SIZE_LIMIT) { return; }
+			}
+		}
+
+		//Keep the clauses of the polarity with fewer clauses for extendModel, followed by a unit clause of the other
+		//polarity, so that the variable is given the other value unless one of those clauses needs it
+		SIntList keptClauses = positiveClauses.size()>negativeClauses.size() ? negativeClauses : positiveClauses;
+		int defaultLiteral = positiveClauses.size()>negativeClauses.size() ? positive : SLiteral.inverse(positive);
+		for (int i=0; i!=keptClauses.size(); ++i) {
+			int[] clause = clauses.get(keptClauses.get(i));
+			int pivot = SLiteral.inverse(defaultLiteral);
+			eliminationStack.add(pivot);
+			for (int l:clause) {
+				if (l!=pivot) { eliminationStack.add(l); }
+			}
+			eliminationStack.add(clause.length);
+		}
+		eliminationStack.add(defaultLiteral);
+		eliminationStack.add(1);
+
+		ArrayList<int[]> resolvents = new ArrayList<int[]>(resolventCount);
+		for (int i=0; i!=positiveClauses.size(); ++i) {
+			for (int j=0; j!=negativeClauses.size(); ++j) {
+				int size = resolve(clauses.get(positiveClauses.get(i)), clauses.get(negativeClauses.get(j)), index, buffer);
+				if (size>=0) {
+					resolvents.add(Arrays.copyOf(buffer, size));
+				}
+			}
+		}
+		for (int i=0; i!=positiveClauses.size(); ++i) {
+			removeClause(positiveClauses.get(i));
+		}
+		for (int i=0; i!=negativeClauses.size(); ++i) {
+			removeClause(negativeClauses.get(i));
+		}
+		eliminated[index] = true;
+		++eliminatedVariables;
+		for (int[] resolvent:resolvents) {
+			if (resolvent.length==0) {
+				emptyClauseFound = true;
+			} else if (resolvent.length==1) {
+				enqueueUnit(resolvent[0]);
+			} else {
+				storeClause(resolvent);
+			}
+		}
+	}
+
+	/**
+	 * Merges two sorted clauses that disagree on a variable into buffer, leaving that variable out
+	 * @param p A clause with the positive SLiteral of the variable
+	 * @param n A clause with the negative SLiteral of the variable
+	 * @param index The variable index
+	 * @param buffer Must be long enough for both clauses
+	 * @return The size of the resolvent, or -1 if it is a tautology
+	 */
+	private static int resolve(int[] p, int[] n, int index, int[] buffer) {
+		int i = 0, j = 0, size = 0;
+		while (i!=p.length || j!=n.length) {
+			int l;
+			if (j==n.length || (i!=p.length && p[i]<n[j])) {
+				l = p[i++];
+			} else if (i==p.length || n[j]<p[i]) {
+				l = n[j++];
+			} else {
+				l = p[i++];
+				++j;
+			}
+			if (SLiteral.index(l)==index) { continue; }
+			if (size!=0 && buffer[size-1]==SLiteral.inverse(l)) { return -1; }
+			buffer[size++] = l;
+		}
+		return size;
+	}
+
+	/**
+	 * Makes room for the variables of indexes up to newNumberOfVariables-1
+	 * @param newNumberOfVariables
+	 */
+	private void addVariables(int newNumberOfVariables) {
+		if (newNumberOfVariables>occurrences.length) {
+			int capacity = Math.max(newNumberOfVariables, 2*occurrences.length);
+			occurrences = Arrays.copyOf(occurrences, capacity);
+			values = Arrays.copyOf(values, 2*capacity);
+			eliminated = Arrays.copyOf(eliminated, capacity);
+		}
+		for (int i=numberOfVariables; i!=newNumberOfVariables; ++i) {
+			occurrences[i] = new SIntList();
+		}
+		numberOfVariables = newNumberOfVariables;
+	}
+
+	private void enqueueUnit(int l) {
+		if (values[l]==SLiteral.TRUE) { return; }
+		if (values[l]==SLiteral.FALSE) {
+			emptyClauseFound = true;
+			return;
+		}
+		values[l] = SLiteral.TRUE;
+		values[SLiteral.inverse(l)] = SLiteral.FALSE;
+		unitQueue.add(l);
+	}
+
+	private void storeClause(int[] clause) {
+		int c = clauses.size();
+		clauses.add(clause);
+		if (c==signatures.length) {
+			signatures = Arrays.copyOf(signatures, 2*c);
+			inSubsumptionQueue = Arrays.copyOf(inSubsumptionQueue, 2*c);
+		}
+		signatures[c] = computeSignature(clause);
+		for (int l:clause) {
+			occurrences[SLiteral.index(l)].add(c);
+		}
+		inSubsumptionQueue[c] = true;
+		subsumptionQueue.add(c);
+	}
+
+	private void removeClause(int c) {
+		for (int l:clauses.get(c)) {
+			removeOccurrence(SLiteral.index(l), c);
+		}
+		clauses.set(c, null);
+	}
+
+	/**
+	 * Removes a SLiteral from a clause. The clause then becomes a unit clause, or is checked for subsumption again.
+	 * @param c
+	 * @param l The code of the SLiteral
+	 */
+	private void strengthenClause(int c, int l) {
+		int[] clause = clauses.get(c);
+		int[] strengthened = new int[clause.length-1];
+		int size = 0;
+		for (int k:clause) {
+			if (k!=l) { strengthened[size++] = k; }
+		}
+		removeOccurrence(SLiteral.index(l), c);
+		clauses.set(c, strengthened);
+		if (size==1) {
+			removeClause(c);
+			enqueueUnit(strengthened[0]);
+			return;
+		}
+		signatures[c] = computeSignature(strengthened);
+		if (!inSubsumptionQueue[c]) {
+			inSubsumptionQueue[c] = true;
+			subsumptionQueue.add(c);
+		}
+	}
+
+	private void removeOccurrence(int index, int c) {
+		SIntList occurrenceList = occurrences[index];
+		for (int i=occurrenceList.size()-1; i>=0; --i) {
+			if (occurrenceList.get(i)==c) {
+				occurrenceList.set(i, occurrenceList.last());
+				occurrenceList.removeLast();
+				return;
+			}
+		}
+	}
+
+	private static long computeSignature(int[] clause) {
+		long signature = 0;
+		for (int l:clause) {
+			signature |= 1L<<(SLiteral.index(l)&63);
+		}
+		return signature;
+	}
+}
@@ -0,0 +1,222 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This is a class to write the clauses a SATSolver learns and deletes as a proof in binary DRAT format, which a
+ * proof checker can replay to confirm that a Formula has no solution.
+ *
+ * Clauses are encoded straight into a large ByteBuffer, without any text formatting. When it fills up, it is handed
+ * to a thread of its own to be written to the channel while the SATSolver goes on encoding into a second one, so
+ * the SATSolver only ever waits for the channel if it produces proof faster than the channel can take it.
+ * An IOException on that thread is kept and thrown by close, rather than stopping the search.
+ *
+ * Some Terminology:
+ * DRAT			- Deletion Resolution Asymmetric Tautology: A proof format listing each clause added or deleted, in
+ * 				  order. Every added clause must follow from the clauses before it by unit propagation, or be a
+ * 				  resolution asymmetric tautology, such as a unit clause of a pure literal.
+ * binary DRAT	- Each addition is the byte 'a' and each deletion the byte 'd', followed by the literals of the
+ * 				  clause and a 0. A literal of DIMACS variable v is written as 2*v, or 2*v+1 if negative, 7 bits
+ * 				  per byte with the lowest bits first and the high bit of each byte but the last set.
+ * DIMACS number	- The number of a variable in the CNF file, which is its name if the name is a number.
+ *
+ * Class Dependencies:
+ * SATSolver, SLiteral, SLiteralPool
+ */
+public class SProofWriter {
+
+	public static final int BUFFER_SIZE = 1<<22; //The size of each of the two buffers
+	public static final int MAXIMUM_LITERAL_BYTES = 5; //The largest number of bytes of an encoded literal
+	public static final byte ADDITION = 'a';
+	public static final byte DELETION = 'd';
+
+	private WritableByteChannel channel;
+	private SLiteralPool sLiteralPool; //Names the variables of the SATSolver, null to number variable index i as i+1
+	private int[] dimacsNumbers; //The DIMACS number of each variable index, filled in as variables are first seen
+	private ByteBuffer buffer; //The buffer being encoded into
+	private ByteBuffer writtenBuffer; //The buffer being written by executor, or waiting to be encoded into
+	private Future<?> pendingWrite; //The write of writtenBuffer, null if there is none
+	private ExecutorService executor; //The thread writing to channel
+	private IOException writeException; //The first IOException of the writes, thrown by close
+	public long clausesAdded;
+	public long clausesDeleted;
+
+	/**
+	 * Creates a proof writer to a channel
+	 * @param channel Where to write the proof. It is closed by close.
+	 * @param sLiteralPool Gives the name of each variable, so that the proof uses the DIMACS numbers of the CNF file.
+	 * If null, variable index i is numbered i+1.
+	 */
+	public SProofWriter(WritableByteChannel channel, SLiteralPool sLiteralPool) {
+		this.channel = channel;
+		this.sLiteralPool = sLiteralPool;
+		this.dimacsNumbers = new int[16];
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.writtenBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.pendingWrite = null;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SProofWriter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.writeException = null;
+		this.clausesAdded = 0;
+		this.clausesDeleted = 0;
+	}
+
+	/**
+	 * Creates a proof writer to a file, which is created or emptied
+	 * @param fileName
+	 * @param sLiteralPool See SProofWriter(WritableByteChannel, SLiteralPool)
+	 * @throws IOException If the file cannot be opened
+	 */
+	public SProofWriter(String fileName, SLiteralPool sLiteralPool) throws IOException {
+		this(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), sLiteralPool);
+	}
+
+	/**
+	 * Writes the addition of a clause
+	 * @param literalCodes An array holding the codes of the SLiterals of the clause
+	 * @param start The position of the first code in literalCodes
+	 * @param length The number of codes, 0 for the empty clause
+	 */
+	public void addClause(int[] literalCodes, int start, int length) {
+		writeClause(ADDITION, literalCodes, start, length);
+		++clausesAdded;
+	}
+
+	/**
+	 * Writes the deletion of a clause
+	 * @param literalCodes An array holding the codes of the SLiterals of the clause
+	 * @param start The position of the first code in literalCodes
+	 * @param length The number of codes
+	 */
+	public void deleteClause(int[] literalCodes, int start, int length) {
+		writeClause(DELETION, literalCodes, start, length);
+		++clausesDeleted;
+	}
+
+	/**
+	 * Writes out everything still in the buffers and closes the channel
+	 * @throws IOException The first IOException of any write, or of closing the channel
+	 */
+	public void close() throws IOException {
+		swapBuffers();
+		waitForPendingWrite();
+		executor.shutdown();
+		channel.close();
+		if (writeException!=null) {
+			throw writeException;
+		}
+	}
+
+	/**
+	 * Encodes a clause into the buffer, swapping buffers first if it may not fit. A clause too long for an empty
+	 * buffer is split across buffers, swapping whenever there is no room left for another SLiteral and the 0.
+	 */
+	private void writeClause(byte type, int[] literalCodes, int start, int length) {
+		if (buffer.remaining()<(length+2)*MAXIMUM_LITERAL_BYTES) {
+			swapBuffers();
+		}
+		boolean fits = buffer.remaining()>=(length+2)*MAXIMUM_LITERAL_BYTES;
+		buffer.put(type);
+		int end = start+length;
+		for (int i=start; i!=end; ++i) {
+			if (!fits && buffer.remaining()<2*MAXIMUM_LITERAL_BYTES) {
+				swapBuffers();
+			}
+			int l = literalCodes[i];
+			int encoded = 2*dimacsNumber(SLiteral.index(l)) + (SLiteral.isNegative(l) ? 1 : 0);
+			while ((encoded & ~0x7f)!=0) {
+				buffer.put((byte)((encoded & 0x7f) | 0x80));
+				encoded >>>= 7;
+			}
+			buffer.put((byte)encoded);
+		}
+		buffer.put((byte)0);
+	}
+
+	/**
+	 * Returns the DIMACS number of a variable
+	 * @param index The variable index
+	 * @return
+	 */
+	private int dimacsNumber(int index) {
+		if (index>=dimacsNumbers.length) {
+			int[] grown = new int[Math.max(index+1, 2*dimacsNumbers.length)];
+			System.arraycopy(dimacsNumbers, 0, grown, 0, dimacsNumbers.length);
+			dimacsNumbers = grown;
+		}
+		if (dimacsNumbers[index]==0) {
+			int number = index+1;
+			if (sLiteralPool!=null) {
+				try {
+					number = Integer.parseInt(sLiteralPool.variableNames.get(index));
+				} catch (NumberFormatException e) {
+					//Not a DIMACS variable, so it keeps its index
+				}
+			}
+			dimacsNumbers[index] = number;
+		}
+		return dimacsNumbers[index];
+	}
+
+	/**
+	 * Hands the buffer to executor to be written, once the previous one has been, and encodes into that one instead
+	 */
+	private void swapBuffers() {
+		waitForPendingWrite();
+		final ByteBuffer toWrite = buffer;
+		buffer = writtenBuffer;
+		writtenBuffer = toWrite;
+		toWrite.flip();
+		pendingWrite = executor.submit(new Runnable() {
+			public void run() {
+				try {
+					while (toWrite.hasRemaining()) {
+						channel.write(toWrite);
+					}
+				} catch (IOException e) {
+					if (writeException==null) {
+						writeException = e;
+					}
+				}
+				toWrite.clear();
+			}
+		});
+	}
+
+	/**
+	 * Waits until the buffer handed to executor has been written, even if interrupted, as it is about to be reused
+	 */
+	private void waitForPendingWrite() {
+		if (pendingWrite==null) { return; }
+		boolean interrupted = false;
+		while (true) {
+			try {
+				pendingWrite.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		pendingWrite = null;
+	}
+}
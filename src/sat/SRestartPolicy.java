@@ -0,0 +1,24 @@
+package sat;
+
+/**
+ * This is an interface for deciding when a SATSolver running CDCL should restart its search from decision level 0.
+ * Learned clauses and activities are kept across restarts, so a restart only throws away unlucky early decisions.
+ * 
+ * Class Dependencies:
+ * SATSolver, SLubyRestartPolicy, SGlucoseRestartPolicy
+ */
+public interface SRestartPolicy {
+
+	/**
+	 * Called by the SATSolver after every conflict.
+	 * @param learnedClauseLBD The literal block distance of the clause learned from the conflict
+	 * @param numberOfAssignedLiterals The size of assignedLiterals when the conflict happened
+	 * @return TRUE if the search should restart now, otherwise FALSE
+	 */
+	public boolean conflictOccurred(int learnedClauseLBD, int numberOfAssignedLiterals);
+	
+	/**
+	 * Called by the SATSolver after it has restarted.
+	 */
+	public void restarted();
+}
@@ -0,0 +1,157 @@
+package sat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sat.formula.Clause;
+import sat.formula.Formula;
+
+/**
+ * This is a class to find which clauses of a Formula with no solution are enough to have none, which is an
+ * unsatisfiable core of it.
+ *
+ * Every clause is added to the SATSolver with a selector, see SATSolver.addSelectedClause, so that it only counts
+ * when its selector is assumed. The Formula is solved once with every selector assumed, and the failed assumptions
+ * are the selectors of a core. Solving again on the selectors of the core alone usually shrinks it further, until
+ * it no longer does.
+ *
+ * Minimising tries each clause of the core in turn, solving without it: if there is still no solution, it is
+ * dropped, along with every clause the new failed assumptions leave out, and otherwise it is kept, as no core can
+ * do without it. This costs a call to solve per clause of the core, but the same incremental SATSolver is used for
+ * all of them, keeping what it learns, and leaves a core from which no clause can be removed.
+ *
+ * Some Terminology:
+ * core			- A subset of the clauses of the Formula that has no solution on its own.
+ * minimal core	- A core that has a solution if any one of its clauses is removed. There may be smaller cores.
+ * position		- The number of a clause of the Formula, which is also the number of its selector.
+ *
+ * Class Dependencies:
+ * SATSolver, SATSolverOptions, SIntList
+ */
+public class SUnsatisfiableCore {
+
+	private SATSolver solver;
+	private List<Clause> clauses; //The clauses of the Formula, in the order they were added
+	private SIntList failed; //Used to hold the failed selectors of a call to solveSelected
+	public int calls; //The number of calls to solveSelected so far
+
+	/**
+	 * Finds an unsatisfiable core of a Formula
+	 * @param formula A Formula representing an Boolean Satisfiability problem represented in CNF format.
+	 * @param options The settings of the SATSolver. CDCL gives far smaller cores than DPLL, whose failed assumptions
+	 * are every assumption decided on up to the conflict.
+	 * @param minimise TRUE to take the time to find a minimal core
+	 * @return A Formula of clauses of formula that has no solution, or null if formula has a solution
+	 * @throws SATSolver.UnknownResultException If a search runs out of the budget of options, or the thread is 
+	 * interrupted, before the core is found
+	 */
+	public static Formula extract(Formula formula, SATSolverOptions options, boolean minimise) {
+		SUnsatisfiableCore core = new SUnsatisfiableCore(formula, options);
+		SIntList positions = new SIntList(core.clauses.size());
+		for (int i=0; i!=core.clauses.size(); ++i) {
+			positions.add(i);
+		}
+		positions = core.shrink(positions);
+		if (positions==null) {
+			return null;
+		}
+		if (minimise) {
+			positions = core.minimise(positions);
+		}
+		Formula result = new Formula();
+		for (int i=0; i!=positions.size(); ++i) {
+			result = result.addClause(core.clauses.get(positions.get(i)));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the SATSolverOptions cores are found with
+	 * @return
+	 */
+	public static SATSolverOptions createOptions() {
+		SATSolverOptions options = new SATSolverOptions();
+		options.learnClauses = true;
+		options.decisionHeuristic = SATSolverOptions.DecisionHeuristic.ACTIVITY;
+		options.restartPolicy = SATSolverOptions.RestartPolicy.GLUCOSE;
+		options.savePhases = true;
+		return options;
+	}
+
+	/**
+	 * Creates a SATSolver holding every clause of a Formula with its selector
+	 * @param formula
+	 * @param options
+	 */
+	private SUnsatisfiableCore(Formula formula, SATSolverOptions options) {
+		this.solver = new SATSolver(options);
+		this.clauses = new ArrayList<Clause>();
+		this.failed = new SIntList();
+		this.calls = 0;
+		for (Clause c:formula.getClauses()) {
+			clauses.add(c);
+			solver.addSelectedClause(c);
+		}
+	}
+
+	/**
+	 * Solves on the clauses at some positions alone, then again on the core found, until the core stops shrinking
+	 * @param positions
+	 * @return The positions of the core, in the order of positions, or null if the clauses have a solution
+	 */
+	private SIntList shrink(SIntList positions) {
+		while (true) {
+			SIntList core = solveCore(positions);
+			if (core==null || core.size()==positions.size()) {
+				return core;
+			}
+			positions = core;
+		}
+	}
+
+	/**
+	 * Removes from a core every clause it can do without, one at a time
+	 * @param positions The positions of a core
+	 * @return The positions of a minimal core
+	 */
+	private SIntList minimise(SIntList positions) {
+		int i = 0;
+		while (i<positions.size()) {
+			SIntList candidate = new SIntList(positions.size());
+			for (int k=0; k!=positions.size(); ++k) {
+				if (k!=i) {
+					candidate.add(positions.get(k));
+				}
+			}
+			SIntList core = solveCore(candidate);
+			if (core==null) {
+				++i; //Every core of the clauses left needs this clause
+			} else {
+				//The clauses before i are each needed by every core of positions, so they are all still in core
+				positions = core;
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Solves on the clauses at some positions alone
+	 * @param positions
+	 * @return The positions whose selectors failed, in the order of positions, or null if the clauses have a solution
+	 * @throws SATSolver.UnknownResultException If the search gave up, leaving no failed selectors to go by
+	 */
+	private SIntList solveCore(SIntList positions) {
+		++calls;
+		if (solver.solveSelected(positions, failed)) {
+			return null;
+		}
+		if (solver.status==SATSolver.Status.UNKNOWN) {
+			throw new SATSolver.UnknownResultException("The search for a core stopped after " + calls + " calls, before finding out whether there is a solution");
+		}
+		SIntList core = new SIntList(failed.size());
+		for (int i=0; i!=failed.size(); ++i) {
+			core.add(failed.get(i));
+		}
+		return core;
+	}
+}